@@ -0,0 +1,112 @@
+package net.codepoke.ai.challenges.hunterkiller;
+
+import com.badlogic.gdx.graphics.Color;
+
+/**
+ * A precomputed ramp of packed RGBA8888 colors for normalised values, going from a minimum color through a medium
+ * color to a maximum color. Looking up a color does not allocate or lerp, so a ramp can be created once and used to
+ * color every tile of a value map each round.
+ *
+ * @author Anton Valkenberg (anton.valkenberg@gmail.com)
+ *
+ */
+public class ColorRamp {
+
+	/** The default amount of steps in a ramp. */
+	public static final int DEFAULT_STEPS = 256;
+
+	/** The largest quantized value, quantized values are in the range [0, QUANTIZED_MAX] where 0 means not set. */
+	public static final int QUANTIZED_MAX = 255;
+
+	/** The colors of the ramp, for values spread evenly over [0, 1]. */
+	private final int[] colors;
+
+	/** The color of values that are not set. */
+	private final int ignore;
+
+	/** The colors the ramp was created from. */
+	private final Color min, med, max, ignoreColor;
+
+	/**
+	 * Creates a ramp with {@link #DEFAULT_STEPS} steps.
+	 *
+	 * @see #ColorRamp(Color, Color, Color, Color, int)
+	 */
+	public ColorRamp(Color min, Color med, Color max, Color ignore) {
+		this(min, med, max, ignore, DEFAULT_STEPS);
+	}
+
+	/**
+	 * Creates a ramp that visualises values using: value < 0.5 ? min.lerp(med, value / 0.5) : med.lerp(max, (value -
+	 * 0.5) / 0.5);
+	 *
+	 * @param ignore
+	 *            Color value to give values that are not set (i.e. <= 0).
+	 * @param steps
+	 *            The amount of colors to precompute, values are rounded to the nearest step.
+	 */
+	public ColorRamp(Color min, Color med, Color max, Color ignore, int steps) {
+		if (steps < 2)
+			throw new RuntimeException("Error: A ColorRamp needs at least 2 steps, got " + steps);
+
+		colors = new int[steps];
+		Color color = new Color();
+		for (int i = 0; i < steps; i++) {
+			float value = i / (float) (steps - 1);
+			if (value < 0.5f)
+				color.set(min)
+						.lerp(med, value / 0.5f);
+			else
+				color.set(med)
+						.lerp(max, (value - 0.5f) / 0.5f);
+			colors[i] = Color.rgba8888(color);
+		}
+		this.ignore = Color.rgba8888(ignore);
+
+		this.min = new Color(min);
+		this.med = new Color(med);
+		this.max = new Color(max);
+		this.ignoreColor = new Color(ignore);
+	}
+
+	/** Returns whether this ramp was created from the given colors. */
+	public boolean matches(Color min, Color med, Color max, Color ignore) {
+		return this.min.equals(min) && this.med.equals(med) && this.max.equals(max) && this.ignoreColor.equals(ignore);
+	}
+
+	/**
+	 * Returns the packed RGBA8888 color of a value. Values that are not set (i.e. <= 0) get the ignore color, values
+	 * above 1 get the maximum color.
+	 */
+	public int get(float value) {
+		if (!(value > 0))
+			return ignore;
+		if (value >= 1)
+			return colors[colors.length - 1];
+		return colors[(int) (value * (colors.length - 1) + 0.5f)];
+	}
+
+	/**
+	 * Returns the packed RGBA8888 color of a quantized value.
+	 *
+	 * @see #quantize(float)
+	 */
+	public int getQuantized(int quantized) {
+		if (quantized <= 0)
+			return ignore;
+		return colors[((quantized - 1) * (colors.length - 1) + (QUANTIZED_MAX - 1) / 2) / (QUANTIZED_MAX - 1)];
+	}
+
+	/**
+	 * Quantizes a normalised value into a single byte. Values that are not set (i.e. <= 0) become 0, values in (0, 1]
+	 * are spread over [1, {@link #QUANTIZED_MAX}].
+	 */
+	public static byte quantize(float value) {
+		if (!(value > 0))
+			return 0;
+		if (value >= 1)
+			return (byte) QUANTIZED_MAX;
+		return (byte) (1 + (int) (value * (QUANTIZED_MAX - 1) + 0.5f));
+	}
+
+}
@@ -0,0 +1,919 @@
+package net.codepoke.ai.challenges.hunterkiller;
+
+import java.io.UnsupportedEncodingException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+import net.codepoke.ai.challenge.hunterkiller.HunterKillerAction;
+
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.Json;
+import com.badlogic.gdx.utils.JsonReader;
+import com.badlogic.gdx.utils.JsonValue;
+import com.badlogic.gdx.utils.JsonValue.ValueType;
+import com.badlogic.gdx.utils.NumberUtils;
+import com.badlogic.gdx.utils.ObjectIntMap;
+import com.badlogic.gdx.utils.ObjectMap;
+import com.badlogic.gdx.utils.OrderedMap;
+import com.badlogic.gdx.utils.reflect.ArrayReflection;
+import com.badlogic.gdx.utils.reflect.ClassReflection;
+import com.badlogic.gdx.utils.reflect.Constructor;
+import com.badlogic.gdx.utils.reflect.Field;
+import com.badlogic.gdx.utils.reflect.ReflectionException;
+
+/**
+ * Compact binary encoding of match messages, as an alternative to the JSON written by libGDX's {@link Json}. Messages
+ * are written straight from their objects (such as a batch of actions and their orders) and read straight back into
+ * them, without going through JSON text or a tree of it.
+ *
+ * Objects are written following the layout of their class, which consists of the same fields {@link Json} writes. The
+ * first time a layout occurs in a message it is written as a shape: the names of its fields, and the name of its class
+ * if that differs from the type of the field holding the object. After that, every object with the same layout is
+ * written as the index of its shape followed by only its values. Strings (such as enum values) are only written once
+ * per message and referenced by index afterwards, and numbers are written as variable-length integers. Batches of
+ * actions, which repeat a few kinds of orders many times, shrink the most.
+ *
+ * The stream worker of the html project writes the same encoding from the JSON of a stream, where the layout of an
+ * object is its keys and the "class" key holds its class. Since numbers in JSON carry no type, every value starts with
+ * a tag of its kind, and is converted to the type of its field when it is read. Classes that serialize themselves
+ * ({@link Json.Serializable}) are written in the layout of their JSON, and read back through {@link Json}.
+ *
+ * A stream uses the compact encoding if the client asks for it with the {@link #ENCODING_PARAMETER}, and the server
+ * supports it. Compact messages start with {@link #MAGIC}, so they can be told apart from JSON messages per message.
+ *
+ * A codec reuses its buffers and caches the layouts of classes, so it should only be used by one thread at a time.
+ *
+ * @author Anton Valkenberg (anton.valkenberg@gmail.com)
+ *
+ */
+public class CompactMatchCodec {
+
+	/** The stream parameter with which a client asks for compact messages, and its value. */
+	public static final String ENCODING_PARAMETER = "encoding", ENCODING_COMPACT = "compact";
+
+	/** The bytes every compact message starts with. */
+	public static final byte[] MAGIC = { 'H', 'K' };
+
+	/** The version of the encoding. */
+	public static final byte VERSION = 2;
+
+	/** The kinds of messages: an array of actions, or any other message, such as the players or a state. */
+	public static final byte KIND_MESSAGE = 0, KIND_ACTIONS = 1;
+
+	/** The size of the header: the magic, version and kind. */
+	private static final int HEADER_SIZE = MAGIC.length + 2;
+
+	/**
+	 * The tags that start each value. An object starts with {@link #TAG_SHAPE} followed by the definition of its shape
+	 * the first time its shape occurs in a message, and with {@link #TAG_OBJECT} followed by the index of its shape
+	 * after that.
+	 */
+	private static final int TAG_NULL = 0, TAG_FALSE = 1, TAG_TRUE = 2, TAG_LONG = 3, TAG_FLOAT = 4, TAG_DOUBLE = 5,
+			TAG_STRING = 6, TAG_STRING_REF = 7, TAG_ARRAY = 8, TAG_OBJECT = 9, TAG_SHAPE = 10;
+
+	/** Writes and reads the classes that serialize themselves. */
+	private final Json json = new Json();
+	private final JsonReader jsonReader = new JsonReader();
+
+	/** The layouts of the classes that have been written or read, which stay valid across messages. */
+	private final ObjectMap<Class, Layout> layouts = new ObjectMap<Class, Layout>();
+
+	/** The classes that have been read by name, and the constants of the enums that have been read, by name. */
+	private final ObjectMap<String, Class> classes = new ObjectMap<String, Class>();
+	private final ObjectMap<Class, ObjectMap<String, Object>> enumConstants = new ObjectMap<Class, ObjectMap<String, Object>>();
+
+	/** The strings and shapes written so far in the message being encoded, and their index. */
+	private final ObjectIntMap<String> writtenStrings = new ObjectIntMap<String>();
+	private final ObjectIntMap<String> writtenShapes = new ObjectIntMap<String>();
+
+	/** The strings and shapes read so far in the message being decoded, in order of index. */
+	private final Array<String> readStrings = new Array<String>();
+	private final Array<Shape> readShapes = new Array<Shape>();
+
+	/** The buffer of the message being encoded, and the amount of bytes written to it. */
+	private byte[] out = new byte[1024];
+	private int outSize;
+
+	/** The message being decoded, and the position of the next byte to read. */
+	private byte[] in;
+	private int inPosition;
+
+	/** Encodes a batch of actions, as a message of kind {@link #KIND_ACTIONS}. */
+	public byte[] encodeActions(Array<HunterKillerAction> actions) {
+		begin(KIND_ACTIONS);
+		writeValue(actions, Array.class, HunterKillerAction.class);
+		return finish();
+	}
+
+	/**
+	 * Encodes any other object, such as the players or a state, as a message of kind {@link #KIND_MESSAGE}. The class
+	 * of the object is written along with it, so it can be read without knowing what the message contains.
+	 */
+	public byte[] encodeObject(Object object) {
+		begin(KIND_MESSAGE);
+		writeValue(object, null, null);
+		return finish();
+	}
+
+	/** Returns whether a message is in the compact encoding. */
+	public static boolean isCompact(byte[] message) {
+		if (message.length < HEADER_SIZE)
+			return false;
+		for (int i = 0; i < MAGIC.length; i++) {
+			if (message[i] != MAGIC[i])
+				return false;
+		}
+		return true;
+	}
+
+	/** Returns the kind of a compact message, {@link #KIND_ACTIONS} or {@link #KIND_MESSAGE}. */
+	public static byte getKind(byte[] message) {
+		return message[MAGIC.length + 1];
+	}
+
+	/**
+	 * Returns the amount of actions in a compact message of kind {@link #KIND_ACTIONS}, without decoding them.
+	 */
+	public static int getActionCount(byte[] message) {
+		if (!isCompact(message) || getKind(message) != KIND_ACTIONS || message.length <= HEADER_SIZE
+			|| message[HEADER_SIZE] != TAG_ARRAY)
+			throw new RuntimeException("Error: Message is not a compact batch of actions");
+
+		long zigZag = 0;
+		int shift = 0;
+		for (int position = HEADER_SIZE + 1; position < message.length; position++) {
+			zigZag |= (long) (message[position] & 0x7F) << shift;
+			if ((message[position] & 0x80) == 0)
+				return (int) ((zigZag >>> 1) ^ -(zigZag & 1));
+			shift += 7;
+		}
+		throw new RuntimeException("Error: Unexpected end of compact message");
+	}
+
+	/** Decodes a compact message of kind {@link #KIND_ACTIONS} into its actions. */
+	@SuppressWarnings("unchecked")
+	public Array<HunterKillerAction> decodeActions(byte[] message) {
+		if (!isCompact(message) || getKind(message) != KIND_ACTIONS)
+			throw new RuntimeException("Error: Message is not a compact batch of actions");
+
+		begin(message);
+		try {
+			return (Array<HunterKillerAction>) readValue(Array.class, HunterKillerAction.class);
+		} finally {
+			in = null;
+		}
+	}
+
+	/**
+	 * Decodes a compact message into an object of the given type, such as a state or the players. Pass
+	 * Object.class to read a message of which the type is not known, which returns objects of the classes written
+	 * along with them, {@link Array arrays} for arrays, and {@link OrderedMap maps} for objects without a class.
+	 */
+	@SuppressWarnings("unchecked")
+	public <T> T decodeObject(Class<T> type, byte[] message) {
+		begin(message);
+		try {
+			return (T) readValue(type, null);
+		} finally {
+			in = null;
+		}
+	}
+
+	// region Writing
+
+	private void begin(byte kind) {
+		outSize = 0;
+		writtenStrings.clear();
+		writtenShapes.clear();
+		for (int i = 0; i < MAGIC.length; i++) {
+			writeByte(MAGIC[i]);
+		}
+		writeByte(VERSION);
+		writeByte(kind);
+	}
+
+	private byte[] finish() {
+		byte[] encoded = new byte[outSize];
+		System.arraycopy(out, 0, encoded, 0, outSize);
+		return encoded;
+	}
+
+	/**
+	 * Writes a value held by a field (or array) of the given type, and with the given type of elements if it holds a
+	 * collection. Objects of another class than the type are written with their class.
+	 */
+	@SuppressWarnings("rawtypes")
+	private void writeValue(Object value, Class type, Class elementType) {
+		if (value == null) {
+			writeByte(TAG_NULL);
+		} else if (value instanceof String) {
+			writeString((String) value);
+		} else if (value instanceof Boolean) {
+			writeByte((Boolean) value ? TAG_TRUE : TAG_FALSE);
+		} else if (value instanceof Float) {
+			writeByte(TAG_FLOAT);
+			writeInt(NumberUtils.floatToRawIntBits((Float) value));
+		} else if (value instanceof Double) {
+			writeByte(TAG_DOUBLE);
+			long bits = NumberUtils.doubleToLongBits((Double) value);
+			writeInt((int) (bits >>> 32));
+			writeInt((int) bits);
+		} else if (value instanceof Number) {
+			writeByte(TAG_LONG);
+			writeVarLong(((Number) value).longValue());
+		} else if (value instanceof Character) {
+			writeString(String.valueOf(value));
+		} else if (value instanceof Enum) {
+			writeString(((Enum) value).name());
+		} else if (ClassReflection.isArray(value.getClass())) {
+			Class componentType = value.getClass()
+										.getComponentType();
+			int length = ArrayReflection.getLength(value);
+			writeByte(TAG_ARRAY);
+			writeVarLong(length);
+			for (int i = 0; i < length; i++) {
+				writeValue(ArrayReflection.get(value, i), componentType, null);
+			}
+		} else if (value instanceof Array) {
+			Array items = (Array) value;
+			writeByte(TAG_ARRAY);
+			writeVarLong(items.size);
+			for (int i = 0; i < items.size; i++) {
+				writeValue(items.get(i), elementType, null);
+			}
+		} else if (value instanceof Collection) {
+			Collection items = (Collection) value;
+			writeByte(TAG_ARRAY);
+			writeVarLong(items.size());
+			for (Object item : items) {
+				writeValue(item, elementType, null);
+			}
+		} else if (value instanceof ObjectMap || value instanceof Map) {
+			writeMap(value, elementType);
+		} else if (value instanceof Json.Serializable) {
+			// The class decides its own JSON, so its layout is that of the JSON
+			writeTree(jsonReader.parse(json.toJson(value, type)));
+		} else {
+			writeObject(value, value.getClass() != type);
+		}
+	}
+
+	/** Writes an object through the layout of its class, with its class if it can't be told from where it is held. */
+	private void writeObject(Object object, boolean withClass) {
+		Layout layout = getLayout(object.getClass());
+		writeShape(withClass ? layout.className : null, layout.names, withClass ? layout.classKey : layout.key);
+
+		Field[] fields = layout.fields;
+		for (int i = 0; i < fields.length; i++) {
+			try {
+				writeValue(fields[i].get(object), fields[i].getType(), layout.elementTypes[i]);
+			} catch (ReflectionException e) {
+				throw new RuntimeException("Error: Could not read field " + layout.names[i] + " of " + layout.className, e);
+			}
+		}
+	}
+
+	/** Writes a map, its keys are the names of its shape. */
+	@SuppressWarnings({ "rawtypes", "unchecked" })
+	private void writeMap(Object value, Class valueType) {
+		Array<String> names = new Array<String>(String.class);
+		Array<Object> values = new Array<Object>();
+		if (value instanceof ObjectMap) {
+			for (ObjectMap.Entry entry : ((ObjectMap<Object, Object>) value).entries()) {
+				names.add(String.valueOf(entry.key));
+				values.add(entry.value);
+			}
+		} else {
+			for (Map.Entry entry : ((Map<Object, Object>) value).entrySet()) {
+				names.add(String.valueOf(entry.getKey()));
+				values.add(entry.getValue());
+			}
+		}
+
+		String[] shape = names.toArray();
+		writeShape(null, shape, getShapeKey(null, shape));
+		for (int i = 0; i < values.size; i++) {
+			writeValue(values.get(i), valueType, null);
+		}
+	}
+
+	/** Writes the JSON of an object that serializes itself, in the same way the stream worker writes JSON. */
+	private void writeTree(JsonValue value) {
+		switch (value.type()) {
+		case nullValue:
+			writeByte(TAG_NULL);
+			break;
+		case booleanValue:
+			writeByte(value.asBoolean() ? TAG_TRUE : TAG_FALSE);
+			break;
+		case longValue:
+			writeByte(TAG_LONG);
+			writeVarLong(value.asLong());
+			break;
+		case doubleValue:
+			writeByte(TAG_DOUBLE);
+			long bits = NumberUtils.doubleToLongBits(value.asDouble());
+			writeInt((int) (bits >>> 32));
+			writeInt((int) bits);
+			break;
+		case stringValue:
+			writeString(value.asString());
+			break;
+		case array:
+			writeByte(TAG_ARRAY);
+			writeVarLong(value.size);
+			for (JsonValue child = value.child; child != null; child = child.next) {
+				writeTree(child);
+			}
+			break;
+		case object:
+			String className = null;
+			Array<String> names = new Array<String>(String.class);
+			for (JsonValue child = value.child; child != null; child = child.next) {
+				if (child.name.equals("class") && child.isString()) {
+					className = child.asString();
+				} else {
+					names.add(child.name);
+				}
+			}
+
+			String[] shape = names.toArray();
+			writeShape(className, shape, getShapeKey(className, shape));
+			for (JsonValue child = value.child; child != null; child = child.next) {
+				if (!(className != null && child.name.equals("class")))
+					writeTree(child);
+			}
+			break;
+		default:
+			throw new RuntimeException("Error: Unsupported JSON value (" + value.type() + ")");
+		}
+	}
+
+	/** Writes the index of a shape, or its definition if it has not been written in this message yet. */
+	private void writeShape(String className, String[] names, String key) {
+		int index = writtenShapes.get(key, -1);
+		if (index >= 0) {
+			writeByte(TAG_OBJECT);
+			writeVarLong(index);
+			return;
+		}
+
+		writtenShapes.put(key, writtenShapes.size);
+		writeByte(TAG_SHAPE);
+		writeVarLong(names.length);
+		if (className == null) {
+			writeByte(TAG_NULL);
+		} else {
+			writeString(className);
+		}
+		for (int i = 0; i < names.length; i++) {
+			writeString(names[i]);
+		}
+	}
+
+	/** Writes a string, or a reference to it if it has been written before. */
+	private void writeString(String string) {
+		int index = writtenStrings.get(string, -1);
+		if (index >= 0) {
+			writeByte(TAG_STRING_REF);
+			writeVarLong(index);
+			return;
+		}
+
+		writtenStrings.put(string, writtenStrings.size);
+		byte[] bytes = toUTF8(string);
+		writeByte(TAG_STRING);
+		writeVarLong(bytes.length);
+		ensureCapacity(bytes.length);
+		System.arraycopy(bytes, 0, out, outSize, bytes.length);
+		outSize += bytes.length;
+	}
+
+	/** Writes a number as a zig-zag encoded variable-length integer, 7 bits per byte. */
+	private void writeVarLong(long number) {
+		long zigZag = (number << 1) ^ (number >> 63);
+		while ((zigZag & ~0x7FL) != 0) {
+			writeByte((int) ((zigZag & 0x7F) | 0x80));
+			zigZag >>>= 7;
+		}
+		writeByte((int) zigZag);
+	}
+
+	private void writeInt(int number) {
+		writeByte(number >>> 24);
+		writeByte(number >>> 16);
+		writeByte(number >>> 8);
+		writeByte(number);
+	}
+
+	private void writeByte(int b) {
+		ensureCapacity(1);
+		out[outSize++] = (byte) b;
+	}
+
+	private void ensureCapacity(int extra) {
+		if (outSize + extra <= out.length)
+			return;
+		byte[] larger = new byte[Math.max(out.length * 2, outSize + extra)];
+		System.arraycopy(out, 0, larger, 0, outSize);
+		out = larger;
+	}
+
+	// endregion
+
+	// region Reading
+
+	private void begin(byte[] message) {
+		if (!isCompact(message))
+			throw new RuntimeException("Error: Message is not in the compact encoding");
+		if (message[MAGIC.length] != VERSION)
+			throw new RuntimeException("Error: Unsupported version of the compact encoding (" + message[MAGIC.length] + ")");
+
+		in = message;
+		inPosition = HEADER_SIZE;
+		readStrings.clear();
+		readShapes.clear();
+	}
+
+	/**
+	 * Reads a value into the given type, with the given type of elements if it is a collection. Null types read the
+	 * value as it was written.
+	 */
+	@SuppressWarnings("rawtypes")
+	private Object readValue(Class type, Class elementType) {
+		if (type == Object.class)
+			type = null;
+
+		int tag = readByte();
+		switch (tag) {
+		case TAG_NULL:
+			return null;
+		case TAG_FALSE:
+			return false;
+		case TAG_TRUE:
+			return true;
+		case TAG_LONG:
+			return toNumber(readVarLong(), type);
+		case TAG_FLOAT:
+			return toNumber(NumberUtils.intBitsToFloat(readInt()), type);
+		case TAG_DOUBLE:
+			long high = readInt() & 0xFFFFFFFFL;
+			long low = readInt() & 0xFFFFFFFFL;
+			return toNumber(NumberUtils.longBitsToDouble((high << 32) | low), type);
+		case TAG_STRING:
+		case TAG_STRING_REF:
+			return toValue(readString(tag), type);
+		case TAG_ARRAY:
+			return readArray(type, elementType);
+		case TAG_SHAPE:
+			return readObject(readShape(), type, elementType);
+		case TAG_OBJECT:
+			return readObject(readShapes.get((int) readVarLong()), type, elementType);
+		default:
+			throw new RuntimeException("Error: Unknown tag in compact message (" + tag + ") at " + (inPosition - 1));
+		}
+	}
+
+	@SuppressWarnings({ "rawtypes", "unchecked" })
+	private Object readArray(Class type, Class elementType) {
+		int size = (int) readVarLong();
+		if (type != null && ClassReflection.isArray(type)) {
+			Class componentType = type.getComponentType();
+			Object array = ArrayReflection.newInstance(componentType, size);
+			for (int i = 0; i < size; i++) {
+				ArrayReflection.set(array, i, readValue(componentType, null));
+			}
+			return array;
+		}
+
+		Collection collection = null;
+		Array items = null;
+		if (type == null || type == Array.class) {
+			items = new Array(size);
+		} else if (ClassReflection.isAssignableFrom(Array.class, type)) {
+			items = (Array) newInstance(type);
+		} else if (ClassReflection.isAssignableFrom(Collection.class, type)) {
+			collection = type.isInterface() ? new ArrayList(size) : (Collection) newInstance(type);
+		} else {
+			throw new RuntimeException("Error: Can't read an array into " + type.getName());
+		}
+
+		for (int i = 0; i < size; i++) {
+			Object item = readValue(elementType, null);
+			if (items != null) {
+				items.add(item);
+			} else {
+				collection.add(item);
+			}
+		}
+		return items != null ? items : collection;
+	}
+
+	@SuppressWarnings({ "rawtypes", "unchecked" })
+	private Object readObject(Shape shape, Class type, Class elementType) {
+		if (shape.type != null)
+			type = shape.type;
+
+		// Objects of unknown type, and maps, hold their values by name
+		if (type == null || ClassReflection.isAssignableFrom(ObjectMap.class, type)) {
+			ObjectMap map = type == null || type == ObjectMap.class ? new OrderedMap() : (ObjectMap) newInstance(type);
+			for (int i = 0; i < shape.names.length; i++) {
+				map.put(shape.names[i], readValue(elementType, null));
+			}
+			return map;
+		}
+		if (ClassReflection.isAssignableFrom(Map.class, type)) {
+			Map map = type.isInterface() ? new HashMap() : (Map) newInstance(type);
+			for (int i = 0; i < shape.names.length; i++) {
+				map.put(shape.names[i], readValue(elementType, null));
+			}
+			return map;
+		}
+		if (ClassReflection.isAssignableFrom(Json.Serializable.class, type))
+			return json.readValue(type, readTree(shape));
+
+		// Values held by a field of type Object are written by Json as an object with their class and value
+		if (shape.names.length == 1 && shape.names[0].equals("value") && isValueType(type))
+			return readValue(type, null);
+
+		Object object = newInstance(type);
+		Field[] fields = getFields(shape, type);
+		Class[] elementTypes = shape.elementTypes;
+		for (int i = 0; i < fields.length; i++) {
+			Object value = readValue(fields[i].getType(), elementTypes[i]);
+			try {
+				fields[i].set(object, value);
+			} catch (ReflectionException e) {
+				throw new RuntimeException("Error: Could not set field " + shape.names[i] + " of " + type.getName(), e);
+			}
+		}
+		return object;
+	}
+
+	/** Reads the definition of a shape, and adds it to the shapes of the message. */
+	private Shape readShape() {
+		int size = (int) readVarLong();
+		int classTag = readByte();
+		String className = classTag == TAG_NULL ? null : readString(classTag);
+
+		String[] names = new String[size];
+		for (int i = 0; i < size; i++) {
+			names[i] = readString(readByte());
+		}
+
+		Shape shape = new Shape(className == null ? null : getClass(className), names);
+		readShapes.add(shape);
+		return shape;
+	}
+
+	/** Reads the values of an object into the tree of its JSON, for classes that serialize themselves. */
+	private JsonValue readTree(Shape shape) {
+		JsonValue object = new JsonValue(ValueType.object);
+		for (int i = 0; i < shape.names.length; i++) {
+			object.addChild(shape.names[i], readTreeValue());
+		}
+		return object;
+	}
+
+	private JsonValue readTreeValue() {
+		int tag = readByte();
+		switch (tag) {
+		case TAG_NULL:
+			return new JsonValue(ValueType.nullValue);
+		case TAG_FALSE:
+			return new JsonValue(false);
+		case TAG_TRUE:
+			return new JsonValue(true);
+		case TAG_LONG:
+			return new JsonValue(readVarLong());
+		case TAG_FLOAT:
+			return new JsonValue(NumberUtils.intBitsToFloat(readInt()));
+		case TAG_DOUBLE:
+			long high = readInt() & 0xFFFFFFFFL;
+			long low = readInt() & 0xFFFFFFFFL;
+			return new JsonValue(NumberUtils.longBitsToDouble((high << 32) | low));
+		case TAG_STRING:
+		case TAG_STRING_REF:
+			return new JsonValue(readString(tag));
+		case TAG_ARRAY: {
+			JsonValue array = new JsonValue(ValueType.array);
+			int size = (int) readVarLong();
+			for (int i = 0; i < size; i++) {
+				array.addChild(readTreeValue());
+			}
+			return array;
+		}
+		case TAG_SHAPE:
+		case TAG_OBJECT: {
+			Shape shape = tag == TAG_SHAPE ? readShape() : readShapes.get((int) readVarLong());
+			JsonValue object = readTree(shape);
+			if (shape.type != null) {
+				JsonValue classValue = new JsonValue(shape.type.getName());
+				classValue.name = "class";
+				classValue.next = object.child;
+				if (object.child != null)
+					object.child.prev = classValue;
+				classValue.parent = object;
+				object.child = classValue;
+				object.size++;
+			}
+			return object;
+		}
+		default:
+			throw new RuntimeException("Error: Unknown tag in compact message (" + tag + ") at " + (inPosition - 1));
+		}
+	}
+
+	/** Reads a string that was started with the given tag. */
+	private String readString(int tag) {
+		if (tag == TAG_STRING_REF)
+			return readStrings.get((int) readVarLong());
+		if (tag != TAG_STRING)
+			throw new RuntimeException("Error: Expected a string in compact message at " + (inPosition - 1));
+
+		int length = (int) readVarLong();
+		if (length < 0 || inPosition + length > in.length)
+			throw new RuntimeException("Error: Unexpected end of compact message");
+		String string = fromUTF8(in, inPosition, length);
+		inPosition += length;
+		readStrings.add(string);
+		return string;
+	}
+
+	private long readVarLong() {
+		long zigZag = 0;
+		int shift = 0;
+		int b;
+		do {
+			b = readByte();
+			zigZag |= (long) (b & 0x7F) << shift;
+			shift += 7;
+		} while ((b & 0x80) != 0);
+		return (zigZag >>> 1) ^ -(zigZag & 1);
+	}
+
+	private int readInt() {
+		return (readByte() << 24) | (readByte() << 16) | (readByte() << 8) | readByte();
+	}
+
+	private int readByte() {
+		if (inPosition >= in.length)
+			throw new RuntimeException("Error: Unexpected end of compact message");
+		return in[inPosition++] & 0xFF;
+	}
+
+	// endregion
+
+	// region Types
+
+	/** Converts an integer to the type of its field, a Long if the type is not known. */
+	@SuppressWarnings("rawtypes")
+	private static Object toNumber(long value, Class type) {
+		if (type == int.class || type == Integer.class)
+			return (int) value;
+		if (type == float.class || type == Float.class)
+			return (float) value;
+		if (type == double.class || type == Double.class)
+			return (double) value;
+		if (type == short.class || type == Short.class)
+			return (short) value;
+		if (type == byte.class || type == Byte.class)
+			return (byte) value;
+		if (type == char.class || type == Character.class)
+			return (char) value;
+		return value;
+	}
+
+	/** Converts a fractional number to the type of its field, a Float or Double as written if the type is not known. */
+	@SuppressWarnings("rawtypes")
+	private static Object toNumber(float value, Class type) {
+		if (type == double.class || type == Double.class)
+			return (double) value;
+		return type == null || type == float.class || type == Float.class ? value : toNumber((double) value, type);
+	}
+
+	@SuppressWarnings("rawtypes")
+	private static Object toNumber(double value, Class type) {
+		if (type == float.class || type == Float.class)
+			return (float) value;
+		if (type == int.class || type == Integer.class)
+			return (int) value;
+		if (type == long.class || type == Long.class)
+			return (long) value;
+		if (type == short.class || type == Short.class)
+			return (short) value;
+		if (type == byte.class || type == Byte.class)
+			return (byte) value;
+		return value;
+	}
+
+	/** Converts a string to the type of its field, which may be an enum or a character. */
+	@SuppressWarnings("rawtypes")
+	private Object toValue(String value, Class type) {
+		if (type == null || type == String.class)
+			return value;
+		if (type == char.class || type == Character.class)
+			return value.charAt(0);
+		if (type.isEnum())
+			return getEnumConstant(type, value);
+		return value;
+	}
+
+	/** Returns whether values of the type are written as a single value instead of an object. */
+	@SuppressWarnings("rawtypes")
+	private static boolean isValueType(Class type) {
+		return type == String.class || type == Integer.class || type == Long.class || type == Float.class || type == Double.class
+				|| type == Boolean.class || type == Short.class || type == Byte.class || type == Character.class || type.isEnum();
+	}
+
+	@SuppressWarnings("rawtypes")
+	private Object getEnumConstant(Class type, String name) {
+		ObjectMap<String, Object> constants = enumConstants.get(type);
+		if (constants == null) {
+			constants = new ObjectMap<String, Object>();
+			for (Object constant : type.getEnumConstants()) {
+				constants.put(((Enum) constant).name(), constant);
+			}
+			enumConstants.put(type, constants);
+		}
+
+		Object constant = constants.get(name);
+		if (constant == null)
+			throw new RuntimeException("Error: Unknown value of " + type.getName() + " (" + name + ")");
+		return constant;
+	}
+
+	@SuppressWarnings("rawtypes")
+	private Class getClass(String name) {
+		Class type = classes.get(name);
+		if (type == null) {
+			try {
+				type = ClassReflection.forName(name);
+			} catch (ReflectionException e) {
+				throw new RuntimeException("Error: Unknown class in compact message (" + name + ")", e);
+			}
+			classes.put(name, type);
+		}
+		return type;
+	}
+
+	/** Creates an object through its no-argument constructor, which may be private, as {@link Json} does. */
+	@SuppressWarnings("rawtypes")
+	private static Object newInstance(Class type) {
+		try {
+			return ClassReflection.newInstance(type);
+		} catch (ReflectionException e) {
+			try {
+				Constructor constructor = ClassReflection.getDeclaredConstructor(type);
+				constructor.setAccessible(true);
+				return constructor.newInstance();
+			} catch (ReflectionException ignored) {
+				throw new RuntimeException("Error: Could not create an instance of " + type.getName(), e);
+			}
+		}
+	}
+
+	/** Returns the layout of a class, the fields that {@link Json} writes. */
+	@SuppressWarnings("rawtypes")
+	private Layout getLayout(Class type) {
+		Layout layout = layouts.get(type);
+		if (layout == null) {
+			layout = new Layout(type);
+			layouts.put(type, layout);
+		}
+		return layout;
+	}
+
+	/** Returns the fields of the names of a shape in the given class, which are looked up once per shape. */
+	@SuppressWarnings("rawtypes")
+	private Field[] getFields(Shape shape, Class type) {
+		if (shape.fieldsType == type)
+			return shape.fields;
+
+		Layout layout = getLayout(type);
+		Field[] fields = new Field[shape.names.length];
+		Class[] elementTypes = new Class[shape.names.length];
+		for (int i = 0; i < fields.length; i++) {
+			int index = layout.indices.get(shape.names[i], -1);
+			if (index < 0)
+				throw new RuntimeException("Error: Field not found: " + shape.names[i] + " (" + type.getName() + ")");
+			fields[i] = layout.fields[index];
+			elementTypes[i] = layout.elementTypes[index];
+		}
+
+		shape.fieldsType = type;
+		shape.fields = fields;
+		shape.elementTypes = elementTypes;
+		return fields;
+	}
+
+	/** Returns the key under which a shape is remembered while writing a message. */
+	private static String getShapeKey(String className, String[] names) {
+		StringBuilder key = new StringBuilder(className == null ? "" : className);
+		for (int i = 0; i < names.length; i++) {
+			key.append('\n')
+				.append(names[i]);
+		}
+		return key.toString();
+	}
+
+	/**
+	 * The fields of a class that are written, in the same order as {@link Json} writes them: those of its superclasses
+	 * first, leaving out static, transient and synthetic fields.
+	 */
+	@SuppressWarnings("rawtypes")
+	private static class Layout {
+
+		public final String className;
+		public final Field[] fields;
+		public final String[] names;
+
+		/** The types of the elements of the fields that are collections (or of the values of maps), null otherwise. */
+		public final Class[] elementTypes;
+
+		/** The indices of the fields by name, to read shapes of which the fields are in another order. */
+		public final ObjectIntMap<String> indices = new ObjectIntMap<String>();
+
+		/** The keys of the shape of the class, without and with its class name. */
+		public final String key, classKey;
+
+		public Layout(Class type) {
+			className = type.getName();
+
+			Array<Class> hierarchy = new Array<Class>();
+			for (Class current = type; current != null && current != Object.class; current = current.getSuperclass()) {
+				hierarchy.add(current);
+			}
+
+			Array<Field> written = new Array<Field>(Field.class);
+			for (int i = hierarchy.size - 1; i >= 0; i--) {
+				for (Field field : ClassReflection.getDeclaredFields(hierarchy.get(i))) {
+					if (field.isTransient() || field.isStatic() || field.isSynthetic())
+						continue;
+					if (!field.isAccessible())
+						field.setAccessible(true);
+					written.add(field);
+				}
+			}
+
+			fields = written.toArray();
+			names = new String[fields.length];
+			elementTypes = new Class[fields.length];
+			for (int i = 0; i < fields.length; i++) {
+				names[i] = fields[i].getName();
+				Class fieldType = fields[i].getType();
+				boolean isMap = ClassReflection.isAssignableFrom(ObjectMap.class, fieldType)
+								|| ClassReflection.isAssignableFrom(Map.class, fieldType);
+				elementTypes[i] = fields[i].getElementType(isMap ? 1 : 0);
+				indices.put(names[i], i);
+			}
+
+			key = getShapeKey(null, names);
+			classKey = getShapeKey(className, names);
+		}
+
+	}
+
+	/**
+	 * A shape read from a message: the class of the objects (null if it is the type of the field holding them) and the
+	 * names of their fields, in the order of their values.
+	 */
+	@SuppressWarnings("rawtypes")
+	private static class Shape {
+
+		public final Class type;
+		public final String[] names;
+
+		/** The fields of the names in the class they were last read into, and the types of their elements. */
+		public Class fieldsType;
+		public Field[] fields;
+		public Class[] elementTypes;
+
+		public Shape(Class type, String[] names) {
+			this.type = type;
+			this.names = names;
+		}
+
+	}
+
+	// endregion
+
+	private static byte[] toUTF8(String string) {
+		try {
+			return string.getBytes("UTF-8");
+		} catch (UnsupportedEncodingException e) {
+			throw new RuntimeException("Error: UTF-8 is not supported", e);
+		}
+	}
+
+	private static String fromUTF8(byte[] bytes, int offset, int length) {
+		try {
+			return new String(bytes, offset, length, "UTF-8");
+		} catch (UnsupportedEncodingException e) {
+			throw new RuntimeException("Error: UTF-8 is not supported", e);
+		}
+	}
+
+}
@@ -0,0 +1,193 @@
+package net.codepoke.ai.challenges.hunterkiller;
+
+import net.codepoke.ai.challenge.hunterkiller.Map;
+
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.graphics.GL20;
+import com.badlogic.gdx.graphics.Pixmap;
+import com.badlogic.gdx.graphics.Pixmap.Format;
+import com.badlogic.gdx.graphics.Texture;
+import com.badlogic.gdx.graphics.Texture.TextureFilter;
+import com.badlogic.gdx.graphics.g2d.Batch;
+import com.badlogic.gdx.graphics.glutils.ShaderProgram;
+import com.badlogic.gdx.utils.Bits;
+import com.badlogic.gdx.utils.Disposable;
+
+/**
+ * Shader that darkens everything drawn outside of a player's field-of-view. The field-of-view is uploaded as a mask
+ * texture with one texel per tile, which the shader samples based on where on the board a fragment is drawn. This
+ * allows the board to be drawn without changing the color of the batch per tile.
+ *
+ * @author Anton Valkenberg (anton.valkenberg@gmail.com)
+ *
+ */
+public class FieldOfViewShader
+		implements Disposable {
+
+	/** The texture unit the mask is bound to, unit 0 is used by the batch. */
+	private static final int MASK_UNIT = 1;
+
+	/** The color of a masked texel, which is what a tile outside of the field-of-view is multiplied with. */
+	private static final int MASKED = 0x808080FF, UNMASKED = 0xFFFFFFFF;
+
+	private static final String VERTEX_SHADER = "attribute vec4 " + ShaderProgram.POSITION_ATTRIBUTE + ";\n"
+												+ "attribute vec4 " + ShaderProgram.COLOR_ATTRIBUTE + ";\n"
+												+ "attribute vec2 " + ShaderProgram.TEXCOORD_ATTRIBUTE + "0;\n"
+												+ "uniform mat4 u_projTrans;\n"
+												+ "uniform vec2 u_boardOrigin;\n"
+												+ "uniform vec2 u_boardSize;\n"
+												+ "varying vec4 v_color;\n"
+												+ "varying vec2 v_texCoords;\n"
+												+ "varying vec2 v_boardCoords;\n"
+												+ "\n"
+												+ "void main() {\n"
+												+ "   v_color = " + ShaderProgram.COLOR_ATTRIBUTE + ";\n"
+												+ "   v_color.a = v_color.a * (255.0/254.0);\n"
+												+ "   v_texCoords = " + ShaderProgram.TEXCOORD_ATTRIBUTE + "0;\n"
+												+ "   v_boardCoords = (" + ShaderProgram.POSITION_ATTRIBUTE + ".xy - u_boardOrigin) / u_boardSize;\n"
+												+ "   gl_Position = u_projTrans * " + ShaderProgram.POSITION_ATTRIBUTE + ";\n"
+												+ "}\n";
+
+	private static final String FRAGMENT_SHADER = "#ifdef GL_ES\n"
+													+ "#define LOWP lowp\n"
+													+ "precision mediump float;\n"
+													+ "#else\n"
+													+ "#define LOWP \n"
+													+ "#endif\n"
+													+ "varying LOWP vec4 v_color;\n"
+													+ "varying vec2 v_texCoords;\n"
+													+ "varying vec2 v_boardCoords;\n"
+													+ "uniform sampler2D u_texture;\n"
+													+ "uniform sampler2D u_mask;\n"
+													+ "\n"
+													+ "void main() {\n"
+													+ "  vec4 color = v_color * texture2D(u_texture, v_texCoords);\n"
+													+ "  color.rgb *= texture2D(u_mask, v_boardCoords).rgb;\n"
+													+ "  gl_FragColor = color;\n"
+													+ "}";
+
+	/** The shader, null if it failed to compile. */
+	private ShaderProgram shader;
+
+	/** The mask of each player, indexed on player ID. */
+	private Texture[] masks = new Texture[0];
+
+	/** Scratch pixmap used to build the masks, sized to the map. */
+	private Pixmap pixmap;
+
+	public FieldOfViewShader() {
+		shader = new ShaderProgram(VERTEX_SHADER, FRAGMENT_SHADER);
+		if (!shader.isCompiled()) {
+			Gdx.app.error("FieldOfViewShader", "Could not compile the field-of-view shader: " + shader.getLog());
+			shader.dispose();
+			shader = null;
+		}
+	}
+
+	/** Returns whether the shader is available, if not the field-of-view needs to be drawn some other way. */
+	public boolean isAvailable() {
+		return shader != null;
+	}
+
+	/**
+	 * Uploads the mask of a player's field-of-view. Note that the rows of the mask are the rows as they are drawn, so
+	 * the first row is the bottom row of the map.
+	 *
+	 * @param playerID
+	 *            The ID of the player the field-of-view belongs to.
+	 * @param fov
+	 *            The positions on the map in the player's field-of-view.
+	 * @param unmasked
+	 *            The positions on the map that should never be darkened.
+	 * @param map
+	 *            The map the positions are on.
+	 */
+	public void updateMask(int playerID, Bits fov, Bits unmasked, Map map) {
+		if (shader == null)
+			return;
+
+		int width = map.getMapWidth(), height = map.getMapHeight();
+		if (pixmap == null || pixmap.getWidth() != width || pixmap.getHeight() != height) {
+			if (pixmap != null)
+				pixmap.dispose();
+			pixmap = new Pixmap(width, height, Format.RGBA8888);
+			disposeMasks();
+		}
+
+		for (int xCoord = 0; xCoord < width; xCoord++) {
+			for (int yCoord = 0; yCoord < height; yCoord++) {
+				// Flip our Y-coordinate, since libGdx draws from bottom-left to top-right
+				int mapPosition = map.toPosition(xCoord, (height - 1) - yCoord);
+				pixmap.drawPixel(xCoord, yCoord, fov.get(mapPosition) || unmasked.get(mapPosition) ? UNMASKED : MASKED);
+			}
+		}
+
+		if (playerID >= masks.length) {
+			Texture[] newMasks = new Texture[playerID + 1];
+			System.arraycopy(masks, 0, newMasks, 0, masks.length);
+			masks = newMasks;
+		}
+
+		if (masks[playerID] == null) {
+			masks[playerID] = new Texture(pixmap);
+			masks[playerID].setFilter(TextureFilter.Nearest, TextureFilter.Nearest);
+		} else {
+			masks[playerID].draw(pixmap, 0, 0);
+		}
+	}
+
+	/**
+	 * Starts drawing with the mask of the given player. Everything drawn with the batch will be darkened outside of
+	 * the player's field-of-view, until {@link #end(Batch)} is called.
+	 *
+	 * @param batch
+	 *            The batch that is drawing.
+	 * @param playerID
+	 *            The ID of the player whose field-of-view to draw, its mask must have been uploaded.
+	 * @param x
+	 * @param y
+	 *            The position at which the board is drawn.
+	 * @param width
+	 * @param height
+	 *            The size at which the board is drawn.
+	 */
+	public void begin(Batch batch, int playerID, float x, float y, float width, float height) {
+		batch.setShader(shader);
+
+		masks[playerID].bind(MASK_UNIT);
+		Gdx.gl.glActiveTexture(GL20.GL_TEXTURE0);
+
+		shader.setUniformi("u_mask", MASK_UNIT);
+		shader.setUniformf("u_boardOrigin", x, y);
+		shader.setUniformf("u_boardSize", width, height);
+	}
+
+	/** Stops drawing with the mask, returning the batch to its default shader. */
+	public void end(Batch batch) {
+		batch.setShader(null);
+	}
+
+	/** Releases the textures of the masks. */
+	private void disposeMasks() {
+		for (int i = 0; i < masks.length; i++) {
+			if (masks[i] != null) {
+				masks[i].dispose();
+				masks[i] = null;
+			}
+		}
+	}
+
+	@Override
+	public void dispose() {
+		disposeMasks();
+		if (pixmap != null) {
+			pixmap.dispose();
+			pixmap = null;
+		}
+		if (shader != null) {
+			shader.dispose();
+			shader = null;
+		}
+	}
+
+}
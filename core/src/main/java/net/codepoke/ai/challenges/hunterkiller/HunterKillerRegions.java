@@ -0,0 +1,180 @@
+package net.codepoke.ai.challenges.hunterkiller;
+
+import net.codepoke.ai.challenge.hunterkiller.HunterKillerConstants;
+import net.codepoke.ai.challenge.hunterkiller.enums.StructureType;
+import net.codepoke.ai.challenge.hunterkiller.enums.UnitOrderType;
+import net.codepoke.ai.challenge.hunterkiller.gameobjects.unit.Infected;
+import net.codepoke.ai.challenge.hunterkiller.gameobjects.unit.Medic;
+import net.codepoke.ai.challenge.hunterkiller.gameobjects.unit.Soldier;
+import net.codepoke.ai.challenge.hunterkiller.gameobjects.unit.Unit;
+
+import com.badlogic.gdx.graphics.g2d.TextureRegion;
+import com.badlogic.gdx.scenes.scene2d.ui.Skin;
+import com.badlogic.gdx.utils.Array;
+
+/**
+ * Registry of all {@link TextureRegion}s used by the {@link HunterKillerRenderer} for objects that change during a
+ * match. All regions are resolved from the {@link Skin} once, and are looked up through primitive indices afterwards,
+ * so rendering a frame does not need any String or hash lookups.
+ *
+ * @author Anton Valkenberg (anton.valkenberg@gmail.com)
+ *
+ */
+public class HunterKillerRegions {
+
+	/** The amount of players we have textures for. */
+	public static final int PLAYER_COUNT = 4;
+
+	/** The index used for objects that are not controlled by any player. */
+	public static final int NO_CONTROL_INDEX = PLAYER_COUNT;
+
+	/** Indices of the different types of structures. */
+	public static final int BASE_INDEX = 0, OUTPOST_INDEX = 1, STRONGHOLD_INDEX = 2, OBJECTIVE_INDEX = 3, STRUCTURE_TYPE_COUNT = 4;
+
+	/** Indices of the different types of units. */
+	public static final int INFECTED_INDEX = 0, MEDIC_INDEX = 1, SOLDIER_INDEX = 2, UNIT_TYPE_COUNT = 3;
+
+	/** Regions for the map features. */
+	public final TextureRegion floor, space, wall, doorOpen, doorClosed;
+
+	/** Regions for the effects of orders. */
+	public final TextureRegion meleeEffect, attackEffect, healEffect, areaEffect;
+
+	/** Region used for painting the value map. */
+	public final TextureRegion value;
+
+	/** Regions for the structures, indexed on controlling player (or {@link #NO_CONTROL_INDEX}) and structure type. */
+	private final TextureRegion[][] structures;
+
+	/** Animation frames for the units, indexed on unit type and controlling player. */
+	private final Array<TextureRegion>[][] units;
+
+	/** The glyphs used to visualise the type of a unit order, indexed on the order type's ordinal. */
+	private final String[] orderGlyphs;
+
+	@SuppressWarnings("unchecked")
+	public HunterKillerRegions(Skin skin) {
+		floor = skin.getRegion("map/floor_1");
+		space = skin.getRegions("map/space")
+					.first();
+		wall = skin.getRegion("map/wall_single");
+		doorOpen = skin.getRegion("map/door_open");
+		doorClosed = skin.getRegion("map/door_closed");
+
+		meleeEffect = skin.getRegion("fx/melee");
+		attackEffect = skin.getRegion("fx/attack");
+		healEffect = skin.getRegion("fx/heal");
+		areaEffect = skin.getRegion("fx/aoe");
+
+		value = skin.getRegion("map/value");
+
+		structures = new TextureRegion[PLAYER_COUNT + 1][STRUCTURE_TYPE_COUNT];
+		units = new Array[UNIT_TYPE_COUNT][PLAYER_COUNT];
+
+		for (int i = 1; i <= PLAYER_COUNT; i++) {
+			Array<TextureRegion> bases = skin.getRegions("map/base_p" + i);
+			for (int type = 0; type < STRUCTURE_TYPE_COUNT; type++) {
+				structures[i - 1][type] = bases.get(type);
+			}
+
+			units[INFECTED_INDEX][i - 1] = skin.getRegions("units/infected_p" + i);
+			units[MEDIC_INDEX][i - 1] = skin.getRegions("units/medic_p" + i);
+			units[SOLDIER_INDEX][i - 1] = skin.getRegions("units/soldier_p" + i);
+		}
+
+		for (int type = 0; type < STRUCTURE_TYPE_COUNT; type++) {
+			structures[NO_CONTROL_INDEX][type] = skin.getRegion("map/base_p5_" + type);
+		}
+
+		UnitOrderType[] orderTypes = UnitOrderType.values();
+		orderGlyphs = new String[orderTypes.length];
+		for (int i = 0; i < orderTypes.length; i++) {
+			switch (orderTypes[i]) {
+			case ATTACK:
+				orderGlyphs[i] = "1";
+				break;
+			case ATTACK_SPECIAL:
+				orderGlyphs[i] = "19";
+				break;
+			case MOVE:
+				orderGlyphs[i] = "13";
+				break;
+			case ROTATE_CLOCKWISE:
+				orderGlyphs[i] = "18";
+				break;
+			case ROTATE_COUNTER_CLOCKWISE:
+				orderGlyphs[i] = "3";
+				break;
+			default:
+				orderGlyphs[i] = "";
+				break;
+			}
+		}
+	}
+
+	/**
+	 * Returns the region for a structure, based on its controlling player (or
+	 * {@link HunterKillerConstants#STRUCTURE_NO_CONTROL}) and the index of its type.
+	 */
+	public TextureRegion getStructure(int controller, int typeIndex) {
+		int player = controller == HunterKillerConstants.STRUCTURE_NO_CONTROL ? NO_CONTROL_INDEX : controller;
+		return structures[player][typeIndex];
+	}
+
+	/**
+	 * Returns the animation frames for a unit, based on the index of its type and its controlling player.
+	 */
+	public Array<TextureRegion> getUnit(int typeIndex, int player) {
+		return units[typeIndex][player];
+	}
+
+	/**
+	 * Returns the region for a door in the given state.
+	 */
+	public TextureRegion getDoor(boolean open) {
+		return open ? doorOpen : doorClosed;
+	}
+
+	/**
+	 * Returns the glyph that visualises the given type of unit order.
+	 */
+	public String getOrderGlyph(UnitOrderType type) {
+		return orderGlyphs[type.ordinal()];
+	}
+
+	/**
+	 * Returns the index where a specific {@link StructureType} is located within a player's collection of base-textures
+	 *
+	 * @param type
+	 *            The type of the structure
+	 */
+	public static int getStructureTypeIndex(StructureType type) {
+		switch (type) {
+		case Base:
+			return BASE_INDEX;
+		case Objective:
+			return OBJECTIVE_INDEX;
+		case Outpost:
+			return OUTPOST_INDEX;
+		case Stronghold:
+			return STRONGHOLD_INDEX;
+		default:
+			throw new RuntimeException("Error: Unsupported StructureType (" + type + ")");
+		}
+	}
+
+	/**
+	 * Returns the index of the type of the given unit.
+	 */
+	public static int getUnitTypeIndex(Unit unit) {
+		if (unit instanceof Infected)
+			return INFECTED_INDEX;
+		else if (unit instanceof Medic)
+			return MEDIC_INDEX;
+		else if (unit instanceof Soldier)
+			return SOLDIER_INDEX;
+		else
+			throw new RuntimeException("Error: Unsupported Unit (" + unit.getClass() + ")");
+	}
+
+}
@@ -3,7 +3,8 @@ package net.codepoke.ai.challenges.hunterkiller;
 import static java.lang.Double.min;
 import static java.lang.Math.abs;
 
-import java.util.HashSet;
+import java.nio.IntBuffer;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Random;
 
@@ -13,35 +14,46 @@ import net.codepoke.ai.challenge.hunterkiller.HunterKillerState;
 import net.codepoke.ai.challenge.hunterkiller.Map;
 import net.codepoke.ai.challenge.hunterkiller.MapLocation;
 import net.codepoke.ai.challenge.hunterkiller.enums.Direction;
-import net.codepoke.ai.challenge.hunterkiller.enums.StructureType;
 import net.codepoke.ai.challenge.hunterkiller.enums.UnitOrderType;
-import net.codepoke.ai.challenge.hunterkiller.gameobjects.Controlled;
 import net.codepoke.ai.challenge.hunterkiller.gameobjects.GameObject;
 import net.codepoke.ai.challenge.hunterkiller.gameobjects.mapfeature.Door;
 import net.codepoke.ai.challenge.hunterkiller.gameobjects.mapfeature.Floor;
 import net.codepoke.ai.challenge.hunterkiller.gameobjects.mapfeature.MapFeature;
 import net.codepoke.ai.challenge.hunterkiller.gameobjects.mapfeature.Space;
-import net.codepoke.ai.challenge.hunterkiller.gameobjects.mapfeature.Structure;
 import net.codepoke.ai.challenge.hunterkiller.gameobjects.mapfeature.Wall;
-import net.codepoke.ai.challenge.hunterkiller.gameobjects.unit.Infected;
-import net.codepoke.ai.challenge.hunterkiller.gameobjects.unit.Medic;
-import net.codepoke.ai.challenge.hunterkiller.gameobjects.unit.Soldier;
-import net.codepoke.ai.challenge.hunterkiller.gameobjects.unit.Unit;
 import net.codepoke.ai.challenge.hunterkiller.orders.HunterKillerOrder;
 import net.codepoke.ai.challenge.hunterkiller.orders.UnitOrder;
 import net.codepoke.ai.challenges.hunterkiller.ui.MatchFrame;
 import net.codepoke.ai.challenges.hunterkiller.ui.MatchRenderer;
+import net.codepoke.ai.challenges.hunterkiller.ui.NumberGlyphCache;
+import net.codepoke.ai.challenges.hunterkiller.ui.RenderQueue;
+import net.codepoke.ai.challenges.hunterkiller.ui.StateSnapshot;
 
 import com.badlogic.gdx.Gdx;
 import com.badlogic.gdx.Input.Keys;
 import com.badlogic.gdx.graphics.Color;
+import com.badlogic.gdx.graphics.GL20;
+import com.badlogic.gdx.graphics.Pixmap.Format;
+import com.badlogic.gdx.graphics.Texture;
+import com.badlogic.gdx.graphics.Texture.TextureFilter;
 import com.badlogic.gdx.graphics.g2d.Batch;
 import com.badlogic.gdx.graphics.g2d.BitmapFont;
+import com.badlogic.gdx.graphics.g2d.BitmapFont.BitmapFontData;
+import com.badlogic.gdx.graphics.g2d.SpriteBatch;
 import com.badlogic.gdx.graphics.g2d.TextureRegion;
+import com.badlogic.gdx.graphics.glutils.FrameBuffer;
+import com.badlogic.gdx.math.MathUtils;
+import com.badlogic.gdx.math.Matrix4;
+import com.badlogic.gdx.scenes.scene2d.Actor;
+import com.badlogic.gdx.scenes.scene2d.InputEvent;
+import com.badlogic.gdx.scenes.scene2d.InputListener;
 import com.badlogic.gdx.scenes.scene2d.ui.Skin;
+import com.badlogic.gdx.scenes.scene2d.utils.DragListener;
 import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.Bits;
+import com.badlogic.gdx.utils.BufferUtils;
+import com.badlogic.gdx.utils.FloatArray;
 import com.badlogic.gdx.utils.IntMap;
-import com.badlogic.gdx.utils.ObjectMap;
 
 public class HunterKillerRenderer
 		extends MatchRenderer<HunterKillerState, HunterKillerAction> {
@@ -66,6 +78,30 @@ public class HunterKillerRenderer
 	 */
 	private static final int TEXT_OFFSET_PIXELS = 2;
 
+	/** Indices of the kinds of numbers we draw: health (red), other information (cyan) and IDs (green). */
+	private static final int HP_NUMBER = 0, INFO_NUMBER = 1, ID_NUMBER = 2;
+
+	/** The colors in which the kinds of numbers are drawn. */
+	private static final Color[] NUMBER_COLORS = { Color.RED, Color.CYAN, Color.GREEN };
+
+	/** The layers we draw on, from bottom to top. */
+	private static final int LAYER_FLOOR = 0, LAYER_STRUCTURE = 1, LAYER_DOOR = 2, LAYER_UNIT = 3, LAYER_TEXT = 4, LAYER_FX = 5;
+
+	/** The maximum size of the renderer when using the free camera, larger maps are panned and zoomed instead. */
+	public static final int FREE_CAMERA_MAX_WIDTH = 960, FREE_CAMERA_MAX_HEIGHT = 720;
+
+	/** The name of the value layer used when no layer is specified. */
+	public static final String DEFAULT_VALUE_LAYER = "default";
+
+	/** The keys that toggle the first value layers, in order. */
+	private static final int[] VALUE_LAYER_KEYS = { Keys.F1, Keys.F2, Keys.F3, Keys.F4, Keys.F5, Keys.F6, Keys.F7, Keys.F8 };
+
+	/** The range of zoom-levels the free camera supports, and the factor to zoom with per scroll. */
+	private static final float MIN_ZOOM = 0.1f, MAX_ZOOM = 8f, ZOOM_STEP = 1.1f;
+
+	/** The directions a unit can face, indexed on their ordinal. */
+	private static final Direction[] DIRECTIONS = Direction.values();
+
 	/**
 	 * The default font
 	 */
@@ -76,13 +112,84 @@ public class HunterKillerRenderer
 	 */
 	private IntMap<Array<TextureRegion>> mapCache;
 
-	/** Cache of Type to a list texture names (indexed on player ID) for Controlled */
-	private ObjectMap<Class, String[]> controlledTextures;
+	/** The positions of the doors that need to be rotated to fit between a wall above and below them. */
+	private Bits verticalDoors = new Bits();
+
+	/** The positions that contain Space, which is never shaded when showing the field-of-view. */
+	private Bits spacePositions = new Bits();
+
+	/** The coordinates on the map of each map position, so positions can be drawn without creating locations. */
+	private int[] positionX = new int[0], positionY = new int[0];
 
 	/**
-	 * A representation of values for each tile on the map.
+	 * The snapshot encoded from the current state, if we were given the state itself instead of its snapshot (such as
+	 * when rendering off-screen). Null until it is first needed.
 	 */
-	private Color[][] valueMap = null;;
+	private RoundSnapshot encodedSnapshot;
+
+	/** Collects everything we draw in a frame, so it can be drawn sorted on layer and texture. */
+	private RenderQueue queue = new RenderQueue();
+
+	/** The dimensions of the map for which {@link #mapCache} was created. */
+	private int mapCacheWidth = -1, mapCacheHeight = -1;
+
+	/** Off-screen buffer into which the contents of {@link #mapCache} are baked, so they can be drawn as one quad. */
+	private FrameBuffer mapLayer;
+
+	/** The region covering {@link #mapLayer}, null if the map layer could not be baked. */
+	private TextureRegion mapLayerRegion;
+
+	/** The tile size at which {@link #mapLayer} was baked, -1 if it needs to be (re-)baked. */
+	private int mapLayerTileSize = -1;
+
+	/** Separate batch used for baking, since its projection needs to match the size of {@link #mapLayer}. */
+	private SpriteBatch bakeBatch;
+
+	/** The maximum texture size supported by the GPU, queried once when we first bake the map layer. */
+	private int maxTextureSize = -1;
+
+	/** The frame buffer we are drawn into when rendering off-screen, null when drawn to the screen. */
+	private FrameBuffer target;
+
+	/** Temporary color used when calculating the color of orders. */
+	private final Color orderColor = new Color();
+
+	/** The render scales for which a {@link ScaledFont} has been created. */
+	private FloatArray fontScales = new FloatArray();
+
+	/** The fonts (and the numbers laid out in them) for each of the {@link #fontScales}. */
+	private Array<ScaledFont> scaledFonts = new Array<ScaledFont>();
+
+	/** The regions used for drawing everything that is not part of the map cache. */
+	private HunterKillerRegions regions;
+
+	/**
+	 * Layers of values for each tile on the map, blended over each other in order. The first layer is the default
+	 * layer.
+	 */
+	private Array<ValueLayer> valueLayers = new Array<ValueLayer>();
+
+	/** The textures and opacities of the value layers that are drawn in the current frame. */
+	private Array<Texture> valueTextures = new Array<Texture>();
+	private FloatArray valueOpacities = new FloatArray();
+
+	/** Draws the {@link #valueLayers} with the pattern of the value region on each tile. */
+	private ValueMapShader valueMapShader;
+
+	/**
+	 * The combined field-of-view of each player in the state of the {@link #fieldOfViewSnapshot}, as sets of map
+	 * positions indexed on player ID. A player's field-of-view is only computed once it is shown.
+	 */
+	private Bits[] fieldOfViews = new Bits[0];
+
+	/** Whether the field-of-view of each player has been computed and uploaded to the {@link #fieldOfViewShader}. */
+	private boolean[] fieldOfViewsComputed = new boolean[0];
+
+	/** The snapshot of the state for which the {@link #fieldOfViews} were computed. */
+	private RoundSnapshot fieldOfViewSnapshot;
+
+	/** Shades everything outside of the field-of-view on the GPU, using a mask of the {@link #fieldOfViews}. */
+	private FieldOfViewShader fieldOfViewShader;
 
 	/** A counter used to draw a different frame every 1s. Resets on arbitrary 1000. */
 	private int ticks = 0;
@@ -94,22 +201,55 @@ public class HunterKillerRenderer
 	private boolean showObjectIDs = false;
 	private boolean showValueMap = false;
 
+	/** Whether the map is viewed through a free camera, which can be dragged around and zoomed with the scroll wheel. */
+	private boolean freeCamera = false;
+
+	/** The offset (in pixels on the board) and zoom-level of the free camera. */
+	private float cameraX = 0, cameraY = 0, zoom = 1;
+
+	/** The transform of the batch before we applied the free camera, and the transform including the camera. */
+	private final Matrix4 originalTransform = new Matrix4(), cameraTransform = new Matrix4();
+
+	/** The range of drawing coordinates of the tiles that are visible in the current frame (inclusive). */
+	private int visibleMinX, visibleMaxX, visibleMinY, visibleMaxY;
+
 	public HunterKillerRenderer(MatchFrame<HunterKillerState, HunterKillerAction> parent, Skin skin) {
 		super(parent, skin);
 		defaultFont = skin.getFont("kenny-8outlined-font");
-		controlledTextures = new ObjectMap<Class, String[]>();
-
-		controlledTextures.put(Structure.class, new String[4]);
-		controlledTextures.put(Infected.class, new String[4]);
-		controlledTextures.put(Medic.class, new String[4]);
-		controlledTextures.put(Soldier.class, new String[4]);
+		regions = new HunterKillerRegions(skin);
+		fieldOfViewShader = new FieldOfViewShader();
+		valueMapShader = new ValueMapShader();
+		getValueLayer(DEFAULT_VALUE_LAYER);
+
+		// Pan the free camera by dragging
+		addListener(new DragListener() {
+			@Override
+			public void drag(InputEvent event, float x, float y, int pointer) {
+				if (!freeCamera)
+					return;
+				cameraX -= getDeltaX() / zoom;
+				cameraY -= getDeltaY() / zoom;
+				Gdx.graphics.requestRendering();
+			}
+		});
+
+		// Zoom the free camera by scrolling, which requires us to have the scroll focus while the mouse is over the board
+		addListener(new InputListener() {
+			@Override
+			public void enter(InputEvent event, float x, float y, int pointer, Actor fromActor) {
+				if (getStage() != null)
+					getStage().setScrollFocus(HunterKillerRenderer.this);
+			}
 
-		for (int i = 1; i <= 4; i++) {
-			controlledTextures.get(Structure.class)[i - 1] = "map/base_p" + i;
-			controlledTextures.get(Infected.class)[i - 1] = "units/infected_p" + i;
-			controlledTextures.get(Medic.class)[i - 1] = "units/medic_p" + i;
-			controlledTextures.get(Soldier.class)[i - 1] = "units/soldier_p" + i;
-		}
+			@Override
+			public boolean scrolled(InputEvent event, float x, float y, int amount) {
+				if (!freeCamera)
+					return false;
+				zoom = MathUtils.clamp(amount > 0 ? zoom / ZOOM_STEP : zoom * ZOOM_STEP, MIN_ZOOM, MAX_ZOOM);
+				Gdx.graphics.requestRendering();
+				return true;
+			}
+		});
 	}
 
 	@Override
@@ -118,12 +258,17 @@ public class HunterKillerRenderer
 		timePassed = (timePassed + Gdx.graphics.getDeltaTime() % 1000);
 		ticks = (int) Math.floor(timePassed);
 
-		if (state == null)
+		// Everything is drawn from the snapshot of the state, and the features of the map that never change
+		RoundSnapshot snapshot = getSnapshot();
+		if (snapshot == null)
 			return;
 
-		// Initialize the cache
-		if (mapCache == null) {
-			createMapCache(state);
+		Map map = snapshot.map;
+
+		// Initialize the cache, or rebuild it if we are looking at a map of a different size. A different map of the same
+		// size is only noticed when the cache is cleared, see clearMapCache().
+		if (mapCache == null || mapCacheWidth != map.getMapWidth() || mapCacheHeight != map.getMapHeight()) {
+			createMapCache(map);
 		}
 
 		// WARNING: Null on initial state!
@@ -137,282 +282,256 @@ public class HunterKillerRenderer
 		// Create a new DrawHelper to assist with calculating the coordinates of where to draw things.
 		DrawHelper dh = new DrawHelper(x, y);
 
-		Map map = state.getMap();
-		GameObject[][] objects = map.getMapContent();
+		// Select the font and laid-out numbers for the selected scale
+		ScaledFont scaledFont = getScaledFont(scale);
+		BitmapFont font = scaledFont.font;
+		NumberGlyphCache[] numbers = scaledFont.numbers;
 
-		// Get a collection of the current player's combined field-of-view, we need this to make certain tiles shaded
-		HashSet<MapLocation> fovSet = state.getPlayer(state.getCurrentPlayer())
-											.getCombinedFieldOfView(map);
+		// Tiles are drawn in the color of the batch, tiles outside of the field-of-view are drawn with a gray tint instead
+		float originalColor = batch.getPackedColor();
+		float tintedColor = Color.GRAY.toFloatBits();
 
-		TextureRegion defaultFloor = skin.getRegion("map/floor_1");
-
-		// Check if any of the extra visuals should be toggled
-		if (Gdx.input.isKeyJustPressed(Keys.CONTROL_LEFT) || Gdx.input.isKeyJustPressed(Keys.CONTROL_RIGHT)) {
-			showObjectIDs = !showObjectIDs;
+		// Bake the non-changing part of the map if we haven't done so at this scale yet
+		if (mapLayerTileSize != TILE_SIZE_DRAW) {
+			bakeMapLayer(batch, map);
 		}
-		if (Gdx.input.isKeyJustPressed(Keys.GRAVE)) {
-			showRejectedOrders = !showRejectedOrders;
+
+		// Check if any of the extra visuals should be toggled, renderers drawing off-screen have no user to listen to
+		if (parent != null) {
+			handleToggleKeys();
 		}
-		if (Gdx.input.isKeyJustPressed(Keys.ALT_LEFT)) {
-			showFieldOfView = !showFieldOfView;
+
+		// Look through the free camera, only drawing what is inside of our bounds
+		boolean usingCamera = freeCamera;
+		if (usingCamera) {
+			batch.flush();
+			if (!clipBegin(x, y, getWidth(), getHeight()))
+				return;
+
+			float centerX = x + getWidth() / 2f, centerY = y + getHeight() / 2f;
+			originalTransform.set(batch.getTransformMatrix());
+			cameraTransform.set(originalTransform)
+							.translate(centerX, centerY, 0)
+							.scale(zoom, zoom, 1)
+							.translate(-centerX - cameraX, -centerY - cameraY, 0);
+			batch.setTransformMatrix(cameraTransform);
 		}
-		if (Gdx.input.isKeyJustPressed(Keys.NUM_1)) {
-			showValueMap = !showValueMap;
+		calculateVisibleTiles(map);
+
+		// Get the current player's combined field-of-view, we need this to make certain tiles shaded
+		Bits fov = showFieldOfView ? getFieldOfView(snapshot.currentPlayer) : null;
+
+		// The board is shaded by the field-of-view shader if it is available, otherwise each tile is tinted separately
+		boolean shadeBoard = showFieldOfView && fieldOfViewShader.isAvailable();
+		if (shadeBoard) {
+			fieldOfViewShader.begin(batch,
+									snapshot.currentPlayer,
+									x,
+									y,
+									map.getMapWidth() * TILE_SIZE_DRAW,
+									map.getMapHeight() * TILE_SIZE_DRAW);
 		}
+		boolean tintTiles = showFieldOfView && !shadeBoard;
 
-		for (int xCoord = 0; xCoord < map.getMapWidth(); xCoord++) {
-			for (int yCoord = 0; yCoord < map.getMapHeight(); yCoord++) {
-				// Flip our Y-coordinate, since libGdx draws from bottom-left to top-right
-				int flippedY = (map.getMapHeight() - 1) - yCoord;
-
-				// Check if this location should be tinted
-				boolean tinted = !fovSet.contains(new MapLocation(xCoord, flippedY)) && showFieldOfView;
-
-				// Get the objects on this tile of the map
-				int mapPosition = map.toPosition(xCoord, flippedY);
-				GameObject[] tile = objects[mapPosition];
-
-				// Save the original colors, so we can set them back later
-				Color originalColor = batch.getColor();
-				Color originalFontColor = defaultFont.getColor();
+		// Draw the non-changing part of the map in one go
+		if (mapLayerRegion != null) {
+			batch.draw(mapLayerRegion, x, y, map.getMapWidth() * TILE_SIZE_DRAW, map.getMapHeight() * TILE_SIZE_DRAW);
+		}
 
-				// Change the color if we need to tint this location
-				if (tinted) {
-					// Check if space, them don't tint.
-					if (!(tile[HunterKillerConstants.MAP_INTERNAL_FEATURE_INDEX] instanceof Space))
-						batch.setColor(Color.GRAY);
-				}
+		// Cached positions are already part of the baked map layer, but still need to be drawn when the map layer is not
+		// available, or when they need to be tinted.
+		if (mapLayerRegion == null || tintTiles) {
+			for (int xCoord = visibleMinX; xCoord <= visibleMaxX; xCoord++) {
+				for (int yCoord = visibleMinY; yCoord <= visibleMaxY; yCoord++) {
+					// Flip our Y-coordinate, since libGdx draws from bottom-left to top-right
+					int flippedY = (map.getMapHeight() - 1) - yCoord;
+					int mapPosition = map.toPosition(xCoord, flippedY);
 
-				// Change the font's scale
-				float ogFontScaleX = defaultFont.getData().scaleX;
-				float ogFontScaleY = defaultFont.getData().scaleY;
-				defaultFont.getData().scaleX *= scale;
-				defaultFont.getData().scaleY *= scale;
+					Array<TextureRegion> cell = mapCache.get(mapPosition);
+					if (cell == null)
+						continue;
 
-				// Calculate all our drawing coordinates
-				dh.calculateDrawCoordinates(xCoord, yCoord);
+					// Check if this location should be tinted, but never tint space
+					boolean tinted = tintTiles && !fov.get(mapPosition) && !spacePositions.get(mapPosition);
+					if (mapLayerRegion != null && !tinted)
+						continue;
 
-				// Draw MapFeatures first, since Units are drawn on top of those
-				GameObject object = tile[HunterKillerConstants.MAP_INTERNAL_FEATURE_INDEX];
+					// Calculate all our drawing coordinates
+					dh.calculateDrawCoordinates(xCoord, yCoord);
 
-				// Check if this position has been cached
-				if (mapCache.containsKey(mapPosition)) {
-					for (TextureRegion region : mapCache.get(mapPosition)) {
-						batch.draw(region, dh.drawX, dh.drawY, dh.tileWidth * dh.scaleX, dh.tileHeight * dh.scaleY);
-					}
-				} else if (object instanceof Structure) {
-
-					// Draw a default floor below the structure
-					batch.draw(defaultFloor, dh.drawX, dh.drawY, dh.tileWidth, dh.tileHeight);
-
-					// Check if this structure is being controlled by a player
-					Structure structure = (Structure) object;
-					if (structure.getControllingPlayerID() == HunterKillerConstants.STRUCTURE_NO_CONTROL) {
-						String textureLocation = "map/base_p5_" + getStructureTypeIndex(structure.getType());
-						batch.draw(skin.getRegion(textureLocation), dh.drawX, dh.drawY, dh.tileWidth * dh.scaleX, dh.tileHeight * dh.scaleY);
-					} else {
-						// Draw a different color based on team
-						String structureImg = getTextureLocation(structure);
-
-						batch.draw(	skin.getRegions(structureImg)
-										.get(getStructureTypeIndex(structure.getType())),
+					for (int i = 0; i < cell.size; i++) {
+						queue.draw(	LAYER_FLOOR,
+									0,
+									cell.get(i),
+									tinted ? tintedColor : originalColor,
 									dh.drawX,
 									dh.drawY,
 									dh.tileWidth * dh.scaleX,
 									dh.tileHeight * dh.scaleY);
-
-						if (structure.getType() == StructureType.Base) {
-							// Draw the player's resource amount
-							int resource = state.getPlayer(structure.getControllingPlayerID())
-												.getResource();
-							defaultFont.setColor(Color.CYAN);
-							defaultFont.draw(batch, "" + resource, dh.drawXBaseHP, dh.drawYBaseHP);
-
-						}
-
-						// Draw a Structure's controller-ID if we are showing IDs
-						if (showObjectIDs) {
-							int controllerID = structure.getControllingPlayerID();
-							defaultFont.setColor(Color.GREEN);
-							defaultFont.draw(batch, "" + controllerID, dh.drawXBaseHP, dh.drawYBaseHP);
-						}
-					}
-
-					// Draw the structure's health
-					int health = structure.getHpCurrent();
-					defaultFont.setColor(Color.RED);
-					defaultFont.draw(batch, "" + health, dh.drawXUnitHP, dh.drawYUnitHP);
-
-				} else if (object instanceof Door) {
-					// Get the positions around the Door
-					MapFeature[] features = map.getMapFeaturesAround(map.toLocation(mapPosition));
-					// If indexes 1 and 7 have a Wall, we'll need to rotate the Door 90 degrees
-					float rotation = (features[1] instanceof Wall && features[7] instanceof Wall) ? 90 : 0;
-
-					// Check for open/closed
-					Door door = (Door) object;
-
-					// If the door is open, we want to draw a Floor as background image, so draw it first
-					if (door.isOpen()) {
-						batch.draw(skin.getRegion("map/floor_1"), dh.drawX, dh.drawY, dh.tileWidth, dh.tileHeight);
-					}
-
-					// Draw the door
-					batch.draw(	skin.getRegion(door.isOpen() ? "map/door_open" : "map/door_closed"),
-								dh.drawX,
-								dh.drawY,
-								dh.originX,
-								dh.originY,
-								dh.tileWidth,
-								dh.tileHeight,
-								dh.scaleX,
-								dh.scaleY,
-								rotation);
-
-					// If the door is open, we want to draw a timer to show when it closes, this should be on top
-					if (door.isOpen()) {
-						// Draw the open-time remaining
-						int time = door.getOpenTimer();
-						defaultFont.setColor(Color.CYAN);
-						defaultFont.draw(batch, "" + time, dh.drawXBaseRes, dh.drawYBaseRes);
 					}
+				}
+			}
+		}
 
-				} else if (object instanceof Floor) {
-					batch.draw(skin.getRegion("map/floor_1"), dh.drawX, dh.drawY, dh.tileWidth, dh.tileHeight);
-				} else if (object instanceof Space) {
-					batch.draw(skin.getRegions("map/space")
-									.first(), dh.drawX, dh.drawY, dh.tileWidth, dh.tileHeight);
-				} else if (object instanceof Wall) {
-					batch.draw(skin.getRegion("map/wall_single"), dh.drawX, dh.drawY, dh.tileWidth, dh.tileHeight);
+		// Draw the structures, doors and units straight from the columns of the snapshot. Units are drawn with a depth
+		// based on their row, so that units lower on the map are drawn on top of the units above them.
+		int mapHeight = map.getMapHeight();
+
+		for (int i = 0; i < snapshot.structureCount; i++) {
+			int mapPosition = snapshot.structurePositions[i];
+			int xCoord = positionX[mapPosition];
+			int yCoord = (mapHeight - 1) - positionY[mapPosition];
+			if (!isVisible(xCoord, yCoord))
+				continue;
+
+			// Check if this location should be tinted
+			float color = tintTiles && !fov.get(mapPosition) ? tintedColor : originalColor;
+			dh.calculateDrawCoordinates(xCoord, yCoord);
+
+			// Draw a default floor below the structure
+			queue.draw(LAYER_FLOOR, 0, regions.floor, color, dh.drawX, dh.drawY, dh.tileWidth, dh.tileHeight);
+
+			// Draw the structure, which has a different color based on team
+			int controller = snapshot.structurePlayers[i];
+			queue.draw(	LAYER_STRUCTURE,
+						0,
+						regions.getStructure(controller, snapshot.structureTypes[i]),
+						color,
+						dh.drawX,
+						dh.drawY,
+						dh.tileWidth * dh.scaleX,
+						dh.tileHeight * dh.scaleY);
+
+			// Check if this structure is being controlled by a player
+			if (controller != HunterKillerConstants.STRUCTURE_NO_CONTROL) {
+				if (snapshot.structureTypes[i] == HunterKillerRegions.BASE_INDEX) {
+					// Draw the player's resource amount
+					queue.drawNumber(LAYER_TEXT, numbers[INFO_NUMBER], snapshot.resources[controller], dh.drawXBaseHP, dh.drawYBaseHP);
 				}
 
-				// Restore the original settings
-				batch.setColor(originalColor);
-				defaultFont.setColor(originalFontColor);
-				defaultFont.getData().scaleX = ogFontScaleX;
-				defaultFont.getData().scaleY = ogFontScaleY;
+				// Draw a Structure's controller-ID if we are showing IDs
+				if (showObjectIDs) {
+					queue.drawNumber(LAYER_TEXT, numbers[ID_NUMBER], controller, dh.drawXBaseHP, dh.drawYBaseHP);
+				}
 			}
+
+			// Draw the structure's health
+			queue.drawNumber(LAYER_TEXT, numbers[HP_NUMBER], snapshot.structureHp[i], dh.drawXUnitHP, dh.drawYUnitHP);
 		}
 
-		// Go through the map a second time to draw the units
-		for (int xCoord = 0; xCoord < map.getMapWidth(); xCoord++) {
-			for (int yCoord = map.getMapHeight(); yCoord-- > 0;) {
-				// Flip our Y-coordinate, since libGdx draws from bottom-left to top-right
-				int flippedY = (map.getMapHeight() - 1) - yCoord;
+		for (int i = 0; i < snapshot.doorCount; i++) {
+			int mapPosition = snapshot.doorPositions[i];
+			int xCoord = positionX[mapPosition];
+			int yCoord = (mapHeight - 1) - positionY[mapPosition];
+			if (!isVisible(xCoord, yCoord))
+				continue;
 
-				// Check if this location should be tinted
-				boolean tinted = !fovSet.contains(new MapLocation(xCoord, flippedY)) && showFieldOfView;
+			float color = tintTiles && !fov.get(mapPosition) ? tintedColor : originalColor;
+			dh.calculateDrawCoordinates(xCoord, yCoord);
 
-				// Save the original colors, so we can set them back later
-				Color originalColor = batch.getColor();
-				Color originalFontColor = defaultFont.getColor();
+			// If the door is between a wall above and below it, we'll need to rotate the Door 90 degrees
+			float rotation = verticalDoors.get(mapPosition) ? 90 : 0;
+			boolean open = snapshot.doorTimers[i] != RoundSnapshot.DOOR_CLOSED;
 
-				// Change the color if we need to tint this location
-				if (tinted) {
-					batch.setColor(Color.GRAY);
-				}
+			// If the door is open, we want to draw a Floor as background image, so draw it first
+			if (open) {
+				queue.draw(LAYER_FLOOR, 0, regions.floor, color, dh.drawX, dh.drawY, dh.tileWidth, dh.tileHeight);
+			}
 
-				// Change the font's scale
-				float ogFontScaleX = defaultFont.getData().scaleX;
-				float ogFontScaleY = defaultFont.getData().scaleY;
-				defaultFont.getData().scaleX *= scale;
-				defaultFont.getData().scaleY *= scale;
-
-				// Get the objects on this tile of the map
-				int mapPosition = map.toPosition(xCoord, flippedY);
-				GameObject[] tile = objects[mapPosition];
-
-				// Calculate all our drawing coordinates
-				dh.calculateDrawCoordinates(xCoord, yCoord);
-
-				// Check if there is a unit on this location
-				if (tile[HunterKillerConstants.MAP_INTERNAL_UNIT_INDEX] != null) {
-					// Draw Units
-					Unit unit = (Unit) tile[HunterKillerConstants.MAP_INTERNAL_UNIT_INDEX];
-
-					// Get the rotation we need to give while drawing, note that a rotation of 0 is the same as the
-					// sprite stands in the file (which is facing left, or WEST).
-					float rotation = getUnitRotationAngle(unit.getOrientation());
-					float unitScaleX = dh.scaleX;
-					float unitScaleY = dh.scaleY;
-					// However, if the rotation is 180, don't rotate, but flip the texture over the X-axis.
-					if (rotation == 180) {
-						// We don't rotate here, because we want to sprite to have it's feet on the bottom edge.
-						rotation = 0;
-						unitScaleX = -unitScaleX;
-					}
+			// Draw the door
+			queue.draw(	LAYER_DOOR,
+						0,
+						regions.getDoor(open),
+						color,
+						dh.drawX,
+						dh.drawY,
+						dh.originX,
+						dh.originY,
+						dh.tileWidth,
+						dh.tileHeight,
+						dh.scaleX,
+						dh.scaleY,
+						rotation);
+
+			// If the door is open, we want to draw a timer to show when it closes, this should be on top
+			if (open) {
+				queue.drawNumber(LAYER_TEXT, numbers[INFO_NUMBER], snapshot.doorTimers[i], dh.drawXBaseRes, dh.drawYBaseRes);
+			}
+		}
 
-					Array<TextureRegion> unitImgs = skin.getRegions(getTextureLocation(unit));
-					batch.draw(unitImgs.get(ticks % unitImgs.size), dh.drawX, dh.drawY + 4 * scale, // Raise the unit
-																									// off the base
-								// of the tile slightly, to
-								// cause a 3D effect
-								dh.originX,
-								dh.originY,
-								dh.tileWidth,
-								dh.tileHeight,
-								unitScaleX,
-								unitScaleY,
-								rotation);
-
-					// Draw the unit's HP and cooldown
-					int hp = unit.getHpCurrent();
-					if (hp < unit.getHpMax()) {
-						defaultFont.setColor(Color.RED);
-						defaultFont.draw(batch, "" + hp, dh.drawXUnitHP, dh.drawYUnitHP);
-					}
+		for (int i = 0; i < snapshot.unitCount; i++) {
+			int mapPosition = snapshot.unitPositions[i];
+			int xCoord = positionX[mapPosition];
+			int flippedY = positionY[mapPosition];
+			int yCoord = (mapHeight - 1) - flippedY;
+			if (!isVisible(xCoord, yCoord))
+				continue;
+
+			float color = tintTiles && !fov.get(mapPosition) ? tintedColor : originalColor;
+			dh.calculateDrawCoordinates(xCoord, yCoord);
+
+			// Get the rotation we need to give while drawing, note that a rotation of 0 is the same as the
+			// sprite stands in the file (which is facing left, or WEST).
+			float rotation = getUnitRotationAngle(DIRECTIONS[snapshot.unitOrientations[i]]);
+			float unitScaleX = dh.scaleX;
+			float unitScaleY = dh.scaleY;
+			// However, if the rotation is 180, don't rotate, but flip the texture over the X-axis.
+			if (rotation == 180) {
+				// We don't rotate here, because we want to sprite to have it's feet on the bottom edge.
+				rotation = 0;
+				unitScaleX = -unitScaleX;
+			}
 
-					int cd = unit.getSpecialAttackCooldown();
-					// Only draw the cooldown if it's on (>0)
-					if (cd > 0) {
-						defaultFont.setColor(Color.CYAN);
-						defaultFont.draw(batch, "" + cd, dh.drawXUnitCD, dh.drawYUnitCD);
-					}
+			Array<TextureRegion> unitImgs = regions.getUnit(snapshot.unitTypes[i], snapshot.unitPlayers[i]);
+			queue.draw(	LAYER_UNIT,
+						flippedY,
+						unitImgs.get(ticks % unitImgs.size),
+						color,
+						dh.drawX,
+						dh.drawY + 4 * scale, // Raise the unit off the base of the tile slightly, to cause a 3D effect
+						dh.originX,
+						dh.originY,
+						dh.tileWidth,
+						dh.tileHeight,
+						unitScaleX,
+						unitScaleY,
+						rotation);
+
+			// Draw the unit's HP and cooldown
+			int hp = snapshot.unitHp[i];
+			if (hp < snapshot.unitHpMax[i]) {
+				queue.drawNumber(LAYER_TEXT, numbers[HP_NUMBER], hp, dh.drawXUnitHP, dh.drawYUnitHP);
+			}
 
-					// Draw a Unit's ID if we are showing IDs
-					if (showObjectIDs) {
-						int unitID = unit.getID();
-						defaultFont.setColor(Color.GREEN);
-						defaultFont.draw(batch, "" + unitID, dh.drawXBaseHP, dh.drawYBaseHP);
-					}
-				}
+			int cd = snapshot.unitCooldowns[i];
+			// Only draw the cooldown if it's on (>0)
+			if (cd > 0) {
+				queue.drawNumber(LAYER_TEXT, numbers[INFO_NUMBER], cd, dh.drawXUnitCD, dh.drawYUnitCD);
+			}
 
-				// Restore the original settings
-				batch.setColor(originalColor);
-				defaultFont.setColor(originalFontColor);
-				defaultFont.getData().scaleX = ogFontScaleX;
-				defaultFont.getData().scaleY = ogFontScaleY;
+			// Draw a Unit's ID if we are showing IDs
+			if (showObjectIDs) {
+				queue.drawNumber(LAYER_TEXT, numbers[ID_NUMBER], snapshot.unitIDs[i], dh.drawXBaseHP, dh.drawYBaseHP);
 			}
 		}
 
 		// Check if we need to draw any actions
 		if (action != null) {
 
-			// Remember the original batch color
-			Color originalColor = batch.getColor();
-			// Remember the original font color
-			Color originalFontColor = defaultFont.getColor();
-
-			// Change the font's scale
-			float ogFontScaleX = defaultFont.getData().scaleX;
-			float ogFontScaleY = defaultFont.getData().scaleY;
-			defaultFont.getData().scaleX *= scale;
-			defaultFont.getData().scaleY *= scale;
+			// Accepted actions are drawn with a slightly lighter alpha, and their type with a letter in green
+			float acceptedOrderColor = orderColor.set(batch.getColor())
+													.mul(1, 1, 1, 0.8f)
+													.toFloatBits();
+			float rejectedOrderColor = Color.PINK.toFloatBits();
 
 			for (HunterKillerOrder order : action.getOrders()) {
-				// Set a color for drawing the actions with a slightly lighter alpha
-				batch.setColor(originalColor.r, originalColor.g, originalColor.b, 0.8f);
-				// Draw type of actions with a letter in green
-				defaultFont.setColor(Color.GREEN);
+				// Check if we even want to draw rejected orders
+				if (!order.isAccepted() && !showRejectedOrders)
+					continue;
 
 				// Set a different color for rejected orders
-				if (!order.isAccepted()) {
-					// Check if we even want to draw rejected orders
-					if (!showRejectedOrders)
-						continue;
-					batch.setColor(Color.PINK);
-					defaultFont.setColor(Color.RED);
-				}
+				float color = order.isAccepted() ? acceptedOrderColor : rejectedOrderColor;
+				Color fontColor = order.isAccepted() ? Color.GREEN : Color.RED;
 
 				if (order instanceof UnitOrder) {
 					UnitOrder unitOrder = (UnitOrder) order;
@@ -420,38 +539,16 @@ public class HunterKillerRenderer
 					MapLocation target = unitOrder.getTargetLocation();
 
 					// Get the location of the unit and draw what type of action they did
-					Object actor = map.getObject(unitOrder.objectID);
+					int actor = showRejectedOrders ? snapshot.indexOfUnit(unitOrder.objectID) : -1;
 					// Only draw action types if the actor is a Unit and we have pressed the button
-					if (actor != null && actor instanceof Unit && showRejectedOrders) {
-						Unit actingUnit = (Unit) actor;
-						MapLocation actingUnitLocation = actingUnit.getLocation();
+					if (actor >= 0) {
+						int actorPosition = snapshot.unitPositions[actor];
 						// Flip our Y-coordinate, since libGdx draws from bottom-left to top-right
-						int flippedY = (map.getMapHeight() - 1) - actingUnitLocation.getY();
+						int flippedY = (map.getMapHeight() - 1) - positionY[actorPosition];
 						// Calculate all our drawing coordinates
-						dh.calculateDrawCoordinates(actingUnitLocation.getX(), flippedY);
-
-						String visualOrderType = "";
-						switch (type) {
-						case ATTACK:
-							visualOrderType = "1";
-							break;
-						case ATTACK_SPECIAL:
-							visualOrderType = "19";
-							break;
-						case MOVE:
-							visualOrderType = "13";
-							break;
-						case ROTATE_CLOCKWISE:
-							visualOrderType = "18";
-							break;
-						case ROTATE_COUNTER_CLOCKWISE:
-							visualOrderType = "3";
-							break;
-						default:
-							break;
-						}
+						dh.calculateDrawCoordinates(positionX[actorPosition], flippedY);
 
-						defaultFont.draw(batch, visualOrderType, dh.drawXBaseRes, dh.drawYBaseRes);
+						queue.drawText(LAYER_TEXT, font, fontColor, regions.getOrderGlyph(type), dh.drawXBaseRes, dh.drawYBaseRes);
 					}
 
 					// We will need the order to have a target set, otherwise we can't draw anywhere
@@ -467,12 +564,12 @@ public class HunterKillerRenderer
 							// Check what type of unit the order was for
 							switch (unitOrder.getUnitType()) {
 							case Infected:
-								batch.draw(skin.getRegion("fx/melee"), dh.drawX, dh.drawY, dh.tileWidth, dh.tileHeight);
+								queue.draw(LAYER_FX, 0, regions.meleeEffect, color, dh.drawX, dh.drawY, dh.tileWidth, dh.tileHeight);
 								break;
 							case Medic:
 								// Fall through here, because we draw the Soldier's and Medic's basic attack the same
 							case Soldier:
-								batch.draw(skin.getRegion("fx/attack"), dh.drawX, dh.drawY, dh.tileWidth, dh.tileHeight);
+								queue.draw(LAYER_FX, 0, regions.attackEffect, color, dh.drawX, dh.drawY, dh.tileWidth, dh.tileHeight);
 								break;
 							default:
 								throw new RuntimeException("Unsupported UnitType found: " + unitOrder.getUnitType());
@@ -484,7 +581,7 @@ public class HunterKillerRenderer
 								// Ignore, this special can't be ordered
 								break;
 							case Medic:
-								batch.draw(skin.getRegion("fx/heal"), dh.drawX, dh.drawY, dh.tileWidth, dh.tileHeight);
+								queue.draw(LAYER_FX, 0, regions.healEffect, color, dh.drawX, dh.drawY, dh.tileWidth, dh.tileHeight);
 								break;
 							case Soldier:
 								// Get the area of the Soldier's effect
@@ -495,7 +592,7 @@ public class HunterKillerRenderer
 										continue;
 									// Make a temporary draw-helper
 									dh.calculateDrawCoordinates(loc.getX(), (map.getMapHeight() - 1) - loc.getY());
-									batch.draw(skin.getRegion("fx/aoe"), dh.drawX, dh.drawY, dh.tileWidth, dh.tileHeight);
+									queue.draw(LAYER_FX, 0, regions.areaEffect, color, dh.drawX, dh.drawY, dh.tileWidth, dh.tileHeight);
 								}
 								break;
 							default:
@@ -505,52 +602,136 @@ public class HunterKillerRenderer
 					}
 				}
 			}
-
-			// Restore original settings
-			batch.setColor(originalColor);
-			defaultFont.setColor(originalFontColor);
-			defaultFont.getData().scaleX = ogFontScaleX;
-			defaultFont.getData().scaleY = ogFontScaleY;
 		}
 
-		// Check if the value map needs to be rendered
-		if (valueMap != null && showValueMap) {
+		// Draw everything we have collected, layer by layer. Only the board itself is shaded, text and effects are not.
+		if (shadeBoard) {
+			queue.flush(batch, LAYER_UNIT);
+			fieldOfViewShader.end(batch);
+		}
+		queue.flush(batch);
+
+		// Check if the value layers need to be rendered, which are blended and drawn on top of everything as a single quad
+		if (showValueMap) {
+			int round = snapshot.round;
+			valueTextures.clear();
+			valueOpacities.clear();
+			synchronized (valueLayers) {
+				for (ValueLayer layer : valueLayers) {
+					if (layer.isVisible() && layer.update(round)) {
+						valueTextures.add(layer.getTexture());
+						valueOpacities.add(layer.getOpacity());
+					}
+				}
+			}
 
-			// Go through the map to draw the map features first
-			for (int xCoord = 0; xCoord < map.getMapWidth(); xCoord++) {
-				for (int yCoord = 0; yCoord < map.getMapHeight(); yCoord++) {
-					// Flip our Y-coordinate, since libGdx draws from bottom-left to top-right
-					int flippedY = (map.getMapHeight() - 1) - yCoord;
+			if (valueTextures.size > 0) {
+				valueMapShader.draw(batch,
+									regions.value,
+									valueTextures,
+									valueOpacities,
+									x,
+									y,
+									map.getMapWidth() * TILE_SIZE_DRAW,
+									map.getMapHeight() * TILE_SIZE_DRAW,
+									map.getMapWidth(),
+									map.getMapHeight());
+			}
+		}
 
-					// Calculate all our drawing coordinates
-					dh.calculateDrawCoordinates(xCoord, yCoord);
+		if (usingCamera) {
+			batch.setTransformMatrix(originalTransform);
+			batch.flush();
+			clipEnd();
+		}
+	}
 
-					// Save the color of the batch, so we can set it back later
-					Color originalColor = batch.getColor();
+	/**
+	 * Calculates the range of tiles that are visible, which is the whole map unless we are looking through the free
+	 * camera.
+	 * 
+	 * @param map
+	 *            The map that is being drawn.
+	 */
+	private void calculateVisibleTiles(Map map) {
+		visibleMinX = 0;
+		visibleMaxX = map.getMapWidth() - 1;
+		visibleMinY = 0;
+		visibleMaxY = map.getMapHeight() - 1;
 
-					// Get the value for this location
-					Color value = valueMap[xCoord][flippedY];
+		if (!freeCamera)
+			return;
 
-					// Paint the square a certain color
-					batch.setColor(value);
-					batch.draw(skin.getRegion("map/value"), dh.drawX, dh.drawY, dh.tileWidth, dh.tileHeight);
+		// Our bounds, transformed to pixels on the board
+		float halfWidth = getWidth() / 2f, halfHeight = getHeight() / 2f;
+		float minX = -halfWidth / zoom + halfWidth + cameraX;
+		float maxX = halfWidth / zoom + halfWidth + cameraX;
+		float minY = -halfHeight / zoom + halfHeight + cameraY;
+		float maxY = halfHeight / zoom + halfHeight + cameraY;
+
+		visibleMinX = Math.max(visibleMinX, MathUtils.floor(minX / TILE_SIZE_DRAW));
+		visibleMaxX = Math.min(visibleMaxX, MathUtils.floor(maxX / TILE_SIZE_DRAW));
+		visibleMinY = Math.max(visibleMinY, MathUtils.floor(minY / TILE_SIZE_DRAW));
+		visibleMaxY = Math.min(visibleMaxY, MathUtils.floor(maxY / TILE_SIZE_DRAW));
+	}
 
-					// Reset the correct color
-					batch.setColor(originalColor);
-				}
+	/**
+	 * Toggles the extra visuals whose keys were pressed since the last frame.
+	 */
+	private void handleToggleKeys() {
+		if (Gdx.input.isKeyJustPressed(Keys.CONTROL_LEFT) || Gdx.input.isKeyJustPressed(Keys.CONTROL_RIGHT)) {
+			showObjectIDs = !showObjectIDs;
+		}
+		if (Gdx.input.isKeyJustPressed(Keys.GRAVE)) {
+			showRejectedOrders = !showRejectedOrders;
+		}
+		if (Gdx.input.isKeyJustPressed(Keys.ALT_LEFT)) {
+			showFieldOfView = !showFieldOfView;
+		}
+		if (Gdx.input.isKeyJustPressed(Keys.NUM_1)) {
+			showValueMap = !showValueMap;
+		}
+		synchronized (valueLayers) {
+			for (int i = 0; i < valueLayers.size && i < VALUE_LAYER_KEYS.length; i++) {
+				ValueLayer layer = valueLayers.get(i);
+				if (Gdx.input.isKeyJustPressed(VALUE_LAYER_KEYS[i]))
+					layer.setVisible(!layer.isVisible());
 			}
 		}
+		if (Gdx.input.isKeyJustPressed(Keys.C)) {
+			setFreeCamera(!freeCamera);
+		}
 	}
 
 	/**
-	 * Returns the location and name of a texture for a given Controlled instance. (Based on class and controlling
-	 * player)
+	 * Sets whether the map is viewed through a free camera. The free camera limits the size of the renderer to
+	 * {@link #FREE_CAMERA_MAX_WIDTH} by {@link #FREE_CAMERA_MAX_HEIGHT}, and lets the user drag and zoom the map inside
+	 * of it. Toggled with the C-key.
 	 */
-	private String getTextureLocation(Controlled target) {
-		if (target.getControllingPlayerID() != HunterKillerConstants.STRUCTURE_NO_CONTROL)
-			return controlledTextures.get(target.getClass())[target.getControllingPlayerID()];
-		else
-			throw new RuntimeException("Error: cannot get the texture location of an uncontrolled object");
+	public void setFreeCamera(boolean freeCamera) {
+		this.freeCamera = freeCamera;
+		cameraX = 0;
+		cameraY = 0;
+		zoom = 1;
+
+		// Renderers drawing off-screen have no frame that needs to follow our size
+		if (parent == null)
+			return;
+
+		// Our preferred size changes, so the frame needs to be resized, but not in the middle of drawing
+		Gdx.app.postRunnable(new Runnable() {
+
+			@Override
+			public void run() {
+				parent.recalculatePreferredSize(true);
+			}
+
+		});
+	}
+
+	/** Returns whether the map is viewed through a free camera. */
+	public boolean isFreeCamera() {
+		return freeCamera;
 	}
 
 	/**
@@ -577,6 +758,83 @@ public class HunterKillerRenderer
 		}
 	}
 
+	/**
+	 * Returns the font to draw with at the given render scale, creating it if we haven't drawn at this scale before.
+	 * Each render scale gets its own font instance sharing the regions of the {@link #defaultFont}, so we never need to
+	 * change the scale of a font while drawing.
+	 */
+	private ScaledFont getScaledFont(float scale) {
+		int index = fontScales.indexOf(scale);
+		if (index >= 0)
+			return scaledFonts.get(index);
+
+		BitmapFontData data = new BitmapFontData(defaultFont.getData()
+															.getFontFile(), defaultFont.isFlipped());
+		data.setScale(defaultFont.getData().scaleX * scale, defaultFont.getData().scaleY * scale);
+
+		BitmapFont font = new BitmapFont(data, defaultFont.getRegions(), defaultFont.usesIntegerPositions());
+		font.setColor(defaultFont.getColor());
+
+		ScaledFont scaledFont = new ScaledFont(font);
+		fontScales.add(scale);
+		scaledFonts.add(scaledFont);
+		return scaledFont;
+	}
+
+	/**
+	 * Returns the snapshot of the current state, or null if there is none. If we were given the state itself, it is
+	 * encoded the first time it is needed.
+	 */
+	public RoundSnapshot getSnapshot() {
+		if (snapshot != null)
+			return (RoundSnapshot) snapshot;
+		if (encodedSnapshot == null && state != null)
+			encodedSnapshot = new RoundSnapshot(state, null);
+		return encodedSnapshot;
+	}
+
+	/**
+	 * Returns the combined field-of-view of a player in the current state, as a set of bits indexed on map position.
+	 * The field-of-view is computed, and the mask of the field-of-view shader updated, at most once per state and
+	 * player. The field-of-view is not part of the snapshot, so if we were given one the state is requested from the
+	 * frame, which may need to rebuild it.
+	 */
+	private Bits getFieldOfView(int playerID) {
+		RoundSnapshot snapshot = getSnapshot();
+		if (fieldOfViewSnapshot != snapshot) {
+			fieldOfViewSnapshot = snapshot;
+			Arrays.fill(fieldOfViewsComputed, false);
+		}
+
+		if (playerID >= fieldOfViews.length) {
+			fieldOfViews = Arrays.copyOf(fieldOfViews, playerID + 1);
+			fieldOfViewsComputed = Arrays.copyOf(fieldOfViewsComputed, playerID + 1);
+		}
+		if (fieldOfViews[playerID] == null)
+			fieldOfViews[playerID] = new Bits();
+
+		Bits fov = fieldOfViews[playerID];
+		if (!fieldOfViewsComputed[playerID]) {
+			HunterKillerState fovState = state != null ? state : parent.getState(parent.getDisplayedState());
+			Map map = fovState.getMap();
+			fov.clear();
+			for (MapLocation location : fovState.getPlayer(playerID)
+												.getCombinedFieldOfView(map)) {
+				fov.set(map.toPosition(location.getX(), location.getY()));
+			}
+
+			// The mask only changes together with the field-of-view, so this is the only time it needs to be uploaded
+			fieldOfViewShader.updateMask(playerID, fov, spacePositions, map);
+			fieldOfViewsComputed[playerID] = true;
+		}
+		return fov;
+	}
+
+	/** Returns whether a tile is visible in the current frame, with a margin for the units that stick out of it. */
+	private boolean isVisible(int xCoord, int yCoord) {
+		return xCoord >= visibleMinX - 1 && xCoord <= visibleMaxX + 1 && yCoord >= visibleMinY - 1 && yCoord <= visibleMaxY + 1;
+	}
+
 	/** Returns whether the feature at the given index in the adjacency matrix contains a Wall or Door. */
 	private boolean isWalled(MapFeature[] features, int i) {
 		return features[i] != null && (features[i] instanceof Wall || features[i] instanceof Door);
@@ -585,14 +843,14 @@ public class HunterKillerRenderer
 	/** Grabs all regions from the skin under the key and samples from them with the current weight. */
 	private TextureRegion sample(String key, double weight) {
 
-		Array<TextureRegion> regions = skin.getRegions(key);
+		Array<TextureRegion> candidates = skin.getRegions(key);
 
-		if (regions != null) {
+		if (candidates != null) {
 			TextureRegion target = null;
 
 			// Simple stop once we sample on the weight.
-			for (int i = 0; i < regions.size; i++) {
-				target = regions.get(i);
+			for (int i = 0; i < candidates.size; i++) {
+				target = candidates.get(i);
 				if (weight < 1 + i * 0.2f)
 					break;
 			}
@@ -603,18 +861,47 @@ public class HunterKillerRenderer
 		}
 	}
 
+	/**
+	 * Clears the cache of the map and its baked layer, so they are rebuilt from the next state that is drawn. Should be
+	 * called whenever the renderer moves on to another match, since the cache can't tell two maps of the same size
+	 * apart.
+	 */
+	public void clearMapCache() {
+		mapCache = null;
+		mapLayerTileSize = -1;
+	}
+
 	/**
 	 * Create a cache of {@link TextureRegion}s, indexed by their position on the {@link Map}. This method currently
 	 * caches the following MapFeature-objects: Wall, Floor, Space.
 	 * 
-	 * @param orgState
-	 *            The initial state of the game.
+	 * @param map
+	 *            The map of the game.
 	 */
-	public void createMapCache(HunterKillerState orgState) {
+	public void createMapCache(Map map) {
 		// Create a new cache
 		mapCache = new IntMap<Array<TextureRegion>>();
+		verticalDoors.clear();
+		spacePositions.clear();
+
+		mapCacheWidth = map.getMapWidth();
+		mapCacheHeight = map.getMapHeight();
+
+		// Look up the coordinates of each position once
+		positionX = new int[mapCacheWidth * mapCacheHeight];
+		positionY = new int[mapCacheWidth * mapCacheHeight];
+		for (int xCoord = 0; xCoord < mapCacheWidth; xCoord++) {
+			for (int yCoord = 0; yCoord < mapCacheHeight; yCoord++) {
+				int position = map.toPosition(xCoord, yCoord);
+				positionX[position] = xCoord;
+				positionY[position] = yCoord;
+			}
+		}
+
+		// Any baked map layer is now outdated, and so are the field-of-view masks which leave out the space
+		mapLayerTileSize = -1;
+		fieldOfViewSnapshot = null;
 
-		Map map = orgState.getMap();
 		// Get the map content we are trying to cache
 		GameObject[][] content = map.getMapContent();
 
@@ -671,6 +958,12 @@ public class HunterKillerRenderer
 
 			} else if (feature instanceof Space) {
 				cell.add(sample("map/space", weight));
+				spacePositions.set(position);
+			} else if (feature instanceof Door) {
+				// If the positions above and below the Door have a Wall, we'll need to rotate the Door 90 degrees
+				MapFeature[] features = map.getMapFeaturesAround(map.toLocation(position));
+				if (features[1] instanceof Wall && features[7] instanceof Wall)
+					verticalDoors.set(position);
 			}
 
 			// If we added anything, add it to the cache.
@@ -683,56 +976,244 @@ public class HunterKillerRenderer
 	}
 
 	/**
-	 * Returns the index where a specific {@link StructureType} is located within a player's collection of base-textures
+	 * Draws the contents of the {@link #mapCache} into an off-screen {@link FrameBuffer} at the current tile size. If the
+	 * map would not fit into a single texture, {@link #mapLayerRegion} is left null and the cache is drawn per tile.
 	 * 
-	 * @param type
-	 *            The type of the structure
+	 * @param batch
+	 *            The batch that is currently drawing, this will be ended and restarted around the baking.
+	 * @param map
+	 *            The map that is being drawn.
 	 */
-	public int getStructureTypeIndex(StructureType type) {
-		switch (type) {
-		case Base:
-			return 0;
-		case Objective:
-			return 3;
-		case Outpost:
-			return 1;
-		case Stronghold:
-			return 2;
-		default:
-			throw new RuntimeException("Error: Unsupported StructureType (" + type + ")");
+	private void bakeMapLayer(Batch batch, Map map) {
+		disposeMapLayer();
+		mapLayerTileSize = TILE_SIZE_DRAW;
+
+		int width = map.getMapWidth() * TILE_SIZE_DRAW;
+		int height = map.getMapHeight() * TILE_SIZE_DRAW;
+
+		if (maxTextureSize < 0) {
+			IntBuffer buffer = BufferUtils.newIntBuffer(16);
+			Gdx.gl.glGetIntegerv(GL20.GL_MAX_TEXTURE_SIZE, buffer);
+			maxTextureSize = buffer.get(0);
+		}
+		if (width <= 0 || height <= 0 || width > maxTextureSize || height > maxTextureSize)
+			return;
+
+		if (bakeBatch == null)
+			bakeBatch = new SpriteBatch();
+		bakeBatch.getProjectionMatrix()
+					.setToOrtho2D(0, 0, width, height);
+
+		mapLayer = new FrameBuffer(Format.RGBA8888, width, height, false);
+
+		// We can't draw into the frame buffer while the stage's batch is drawing
+		batch.end();
+
+		mapLayer.begin();
+		Gdx.gl.glClearColor(0, 0, 0, 0);
+		Gdx.gl.glClear(GL20.GL_COLOR_BUFFER_BIT);
+
+		bakeBatch.begin();
+		bakeBatch.setColor(Color.WHITE);
+
+		// The first region of each cell is the tile itself, everything after that is a decal drawn on top of it.
+		for (IntMap.Entry<Array<TextureRegion>> entry : mapCache.entries()) {
+			bakeCell(map, entry.key, entry.value, 0, 1);
+		}
+		bakeBatch.flush();
+
+		// Decals are drawn without writing alpha, otherwise blending them would make the (opaque) tile translucent.
+		Gdx.gl.glColorMask(true, true, true, false);
+		for (IntMap.Entry<Array<TextureRegion>> entry : mapCache.entries()) {
+			bakeCell(map, entry.key, entry.value, 1, entry.value.size);
+		}
+		bakeBatch.flush();
+		Gdx.gl.glColorMask(true, true, true, true);
+
+		bakeBatch.end();
+		mapLayer.end();
+
+		// Ending the map layer binds the screen again, so continue with the frame buffer we were drawing into
+		if (target != null)
+			target.begin();
+
+		batch.begin();
+
+		Texture texture = mapLayer.getColorBufferTexture();
+		texture.setFilter(TextureFilter.Nearest, TextureFilter.Nearest);
+
+		// Frame buffer textures are upside-down
+		mapLayerRegion = new TextureRegion(texture);
+		mapLayerRegion.flip(false, true);
+	}
+
+	/** Draws the regions in the given range of a cached cell into the map layer that is being baked. */
+	private void bakeCell(Map map, int position, Array<TextureRegion> cell, int start, int end) {
+		MapLocation location = map.toLocation(position);
+		float drawX = location.getX() * TILE_SIZE_DRAW;
+		float drawY = ((map.getMapHeight() - 1) - location.getY()) * TILE_SIZE_DRAW;
+
+		for (int i = start; i < end; i++) {
+			bakeBatch.draw(cell.get(i), drawX, drawY, TILE_SIZE_DRAW, TILE_SIZE_DRAW);
+		}
+	}
+
+	/** Releases the baked map layer, if any. */
+	private void disposeMapLayer() {
+		if (mapLayer != null) {
+			mapLayer.dispose();
+			mapLayer = null;
 		}
+		mapLayerRegion = null;
+	}
+
+	/**
+	 * Sets the frame buffer the renderer is drawn into when rendering off-screen, so it is bound again after baking the
+	 * map layer. Null (the default) when drawing to the screen.
+	 */
+	public void setTarget(FrameBuffer target) {
+		this.target = target;
 	}
 
 	/**
-	 * Sets the array of colors representing values of a layer that can be painted over the normal rendering.
+	 * Sets the array of colors representing values of the default layer that can be painted over the normal
+	 * rendering. Unlike the values in the {@link ValueLayer#getHistory() history}, these are only shown until the
+	 * state changes.
 	 * 
 	 * @param map
 	 *            The two-dimensional array of Color, representing the values of the layer.
 	 */
 	public void setValueMap(Color[][] map) {
-		valueMap = map;
+		getValueLayer(DEFAULT_VALUE_LAYER).getValueMap()
+											.setColors(map);
+	}
+
+	/**
+	 * Returns the layer of values with the given name, registering it on top of the existing layers if it does not
+	 * exist yet. All layers are toggled with the 1-key, and the first eight layers separately with the F1 to F8 keys.
+	 */
+	public ValueLayer getValueLayer(String name) {
+		synchronized (valueLayers) {
+			for (ValueLayer layer : valueLayers) {
+				if (layer.getName()
+							.equals(name))
+					return layer;
+			}
+
+			ValueLayer layer = new ValueLayer(name);
+			valueLayers.add(layer);
+			return layer;
+		}
+	}
+
+	/**
+	 * Removes the layer of values with the given name, if it exists. The default layer can't be removed.
+	 */
+	public void removeValueLayer(String name) {
+		if (DEFAULT_VALUE_LAYER.equals(name))
+			throw new RuntimeException("Error: The default value layer can't be removed");
+
+		synchronized (valueLayers) {
+			for (int i = 0; i < valueLayers.size; i++) {
+				if (valueLayers.get(i)
+								.getName()
+								.equals(name)) {
+					final ValueLayer layer = valueLayers.removeIndex(i);
+					// The texture of the layer needs to be released on the rendering thread
+					Gdx.app.postRunnable(new Runnable() {
+
+						@Override
+						public void run() {
+							layer.dispose();
+						}
+
+					});
+					return;
+				}
+			}
+		}
 	}
 
 	@Override
 	public void setState(HunterKillerState state, HunterKillerAction action) {
-		this.state = state;
-		this.action = action;
-		setSize(getPrefWidth(), getPrefHeight());
-		invalidateHierarchy();
-		// Reset the value map
-		valueMap = null;
+		// The snapshot is encoded from the new state once it is needed
+		encodedSnapshot = null;
+		super.setState(state, action);
+		clearUnboundValues();
+	}
+
+	@Override
+	public void setSnapshot(StateSnapshot snapshot, HunterKillerAction action) {
+		encodedSnapshot = null;
+		super.setSnapshot(snapshot, action);
+		clearUnboundValues();
+	}
+
+	/** Resets the value maps when the state changes, unless they were bound to a round. */
+	private void clearUnboundValues() {
+		synchronized (valueLayers) {
+			for (ValueLayer layer : valueLayers) {
+				layer.getValueMap()
+						.clearUnbound();
+			}
+		}
+	}
+
+	@Override
+	public void dispose() {
+		for (ScaledFont scaledFont : scaledFonts) {
+			scaledFont.font.dispose();
+		}
+		scaledFonts.clear();
+		fontScales.clear();
+
+		disposeMapLayer();
+		fieldOfViewShader.dispose();
+		valueMapShader.dispose();
+		synchronized (valueLayers) {
+			for (ValueLayer layer : valueLayers) {
+				layer.dispose();
+			}
+		}
+		if (bakeBatch != null) {
+			bakeBatch.dispose();
+			bakeBatch = null;
+		}
 	}
 
 	@Override
 	public float getPrefWidth() {
-		return (state != null ? state.getMap()
-										.getMapWidth() * TILE_SIZE_ORIGINAL * scale : 0);
+		RoundSnapshot snapshot = getSnapshot();
+		float width = (snapshot != null ? snapshot.width * TILE_SIZE_ORIGINAL * scale : 0);
+		return freeCamera ? Math.min(width, FREE_CAMERA_MAX_WIDTH) : width;
 	}
 
 	@Override
 	public float getPrefHeight() {
-		return (state != null ? state.getMap()
-										.getMapHeight() * TILE_SIZE_ORIGINAL * scale : 0);
+		RoundSnapshot snapshot = getSnapshot();
+		float height = (snapshot != null ? snapshot.height * TILE_SIZE_ORIGINAL * scale : 0);
+		return freeCamera ? Math.min(height, FREE_CAMERA_MAX_HEIGHT) : height;
+	}
+
+	/**
+	 * A font at a fixed render scale, together with the numbers that have been laid out in it.
+	 */
+	private static class ScaledFont {
+
+		/** The font, scaled to the render scale. */
+		public final BitmapFont font;
+
+		/** The laid-out numbers, indexed on the kind of number. */
+		public final NumberGlyphCache[] numbers;
+
+		public ScaledFont(BitmapFont font) {
+			this.font = font;
+			this.numbers = new NumberGlyphCache[NUMBER_COLORS.length];
+			for (int i = 0; i < numbers.length; i++) {
+				numbers[i] = new NumberGlyphCache(font, NUMBER_COLORS[i]);
+			}
+		}
+
 	}
 
 	/**
@@ -3,9 +3,11 @@ package net.codepoke.ai.challenges.hunterkiller;
 import net.codepoke.ai.challenge.hunterkiller.HunterKillerAction;
 import net.codepoke.ai.challenge.hunterkiller.HunterKillerRules;
 import net.codepoke.ai.challenge.hunterkiller.HunterKillerState;
+import net.codepoke.ai.challenge.hunterkiller.Map;
 import net.codepoke.ai.challenge.hunterkiller.Player;
 import net.codepoke.ai.challenges.hunterkiller.ui.MatchFrame;
 
+import com.badlogic.gdx.Gdx;
 import com.badlogic.gdx.graphics.Color;
 import com.badlogic.gdx.scenes.scene2d.ui.Skin;
 
@@ -14,6 +16,12 @@ public class HunterKillerVisualization
 
 	HunterKillerRenderer renderer;
 
+	/** The ramp used by the last call to {@link #visualise(float[][], Color, Color, Color, Color)}. */
+	private ColorRamp lastRamp;
+
+	/** The snapshot of the last state that was added, which the next snapshot shares its map with. */
+	private RoundSnapshot lastSnapshot;
+
 	public HunterKillerVisualization() {
 		super(new HunterKillerRules());
 	}
@@ -24,8 +32,39 @@ public class HunterKillerVisualization
 		return renderer;
 	}
 
+	/**
+	 * Encodes the state into a {@link RoundSnapshot}, which the renderer draws from. Called on the thread adding the
+	 * states.
+	 */
+	@Override
+	public RoundSnapshot createSnapshot(HunterKillerState state, HunterKillerAction action) {
+		// The initial state starts a new match, which shares nothing with the states before it
+		RoundSnapshot snapshot = new RoundSnapshot(state, action != null ? lastSnapshot : null);
+		lastSnapshot = snapshot;
+		return snapshot;
+	}
+
+	@Override
+	protected void onCleared() {
+		// The next match may be played on another map of the same size
+		renderer.clearMapCache();
+	}
+
 	@Override
 	public String[] getPlayers(HunterKillerState state) {
+		return getPlayerNames(state);
+	}
+
+	@Override
+	public int[] getScores(HunterKillerState state) {
+		return getPlayerScores(state);
+	}
+
+	/**
+	 * Returns the names of the players in the state, indexed on player ID. Usable without a visualization, such as
+	 * when rendering off-screen or indexing replays.
+	 */
+	public static String[] getPlayerNames(HunterKillerState state) {
 		Player[] players = state.getPlayers();
 		String[] names = new String[players.length];
 		for (int i = 0; i < names.length; i++) {
@@ -34,8 +73,10 @@ public class HunterKillerVisualization
 		return names;
 	}
 
-	@Override
-	public int[] getScores(HunterKillerState state) {
+	/**
+	 * Returns the scores of the players in the state, indexed on player ID.
+	 */
+	public static int[] getPlayerScores(HunterKillerState state) {
 		Player[] players = state.getPlayers();
 		int[] scores = new int[players.length];
 		for (int i = 0; i < scores.length; i++) {
@@ -45,7 +86,8 @@ public class HunterKillerVisualization
 	}
 
 	/**
-	 * Visualises a layer of values on top of the rendering.
+	 * Visualises a layer of values on top of the rendering of the last state that was added to the match, which is the
+	 * state a bot is deciding on. The values are stored for its round, so they are shown whenever the timeline shows it.
 	 * 
 	 * @param map
 	 *            Two dimensional array of normalised values that will be used to overlay on top of the rendering.
@@ -59,21 +101,97 @@ public class HunterKillerVisualization
 	 * 
 	 */
 	public void visualise(float[][] map, Color min, Color med, Color max, Color ignore) {
-		// Create the array of colors
-		Color[][] valueMap = new Color[map.length][map[0].length];
-
-		// Set the array of color values into the HunterKillerRenderer
-		for (int x = 0; x < valueMap.length; x++) {
-			for (int y = 0; y < valueMap[x].length; y++) {
-				float value = map[x][y];
-				// Note: copy the Color values before lerping, because that method adjusts the object itself.
-				valueMap[x][y] = value > 0 ? value < 0.5 ? min.cpy()
-																.lerp(med, value / 0.5f) : med.cpy()
-																								.lerp(max, (value - 0.5f) / 0.5f) : ignore;
-			}
-		}
+		// Reuse the ramp of the previous call if it used the same colors
+		if (lastRamp == null || !lastRamp.matches(min, med, max, ignore))
+			lastRamp = new ColorRamp(min, med, max, ignore);
+
+		renderer.getValueLayer(HunterKillerRenderer.DEFAULT_VALUE_LAYER)
+				.getHistory()
+				.put(getVisualisedRound(), map, lastRamp);
+		Gdx.graphics.requestRendering();
+	}
+
+	/**
+	 * Visualises a layer of values on top of the rendering of the last state that was added to the match, which is the
+	 * state a bot is deciding on. The values are stored for its round, so they are shown whenever the timeline shows it.
+	 * This does not allocate anything once the round has been visualised, so it can be called every round.
+	 * 
+	 * @param map
+	 *            The map the values belong to.
+	 * @param values
+	 *            Normalised values, indexed on their position on the map (see {@link Map#toPosition(int, int)}).
+	 * @param ramp
+	 *            The precomputed colors used to visualise the values, which can be reused for every call.
+	 */
+	public void visualise(Map map, float[] values, ColorRamp ramp) {
+		visualise(HunterKillerRenderer.DEFAULT_VALUE_LAYER, getVisualisedRound(), map, values, ramp);
+	}
+
+	/**
+	 * Visualises a layer of values on top of the rendering of a specific round. The values are shown whenever that
+	 * round is shown.
+	 * 
+	 * @param round
+	 *            The round the values belong to.
+	 * @see #visualise(Map, float[], ColorRamp)
+	 */
+	public void visualise(int round, Map map, float[] values, ColorRamp ramp) {
+		visualise(HunterKillerRenderer.DEFAULT_VALUE_LAYER, round, map, values, ramp);
+	}
+
+	/**
+	 * Visualises values in a named layer, on top of the rendering of the last state that was added. Each layer can
+	 * be toggled and blended independently, layers that are visualised first are drawn below the others.
+	 * 
+	 * @param layer
+	 *            The name of the layer, such as "threat" or "influence".
+	 * @see #visualise(Map, float[], ColorRamp)
+	 */
+	public void visualise(String layer, Map map, float[] values, ColorRamp ramp) {
+		visualise(layer, getVisualisedRound(), map, values, ramp);
+	}
+
+	/**
+	 * Visualises values in a named layer, on top of the rendering of a specific round.
+	 * 
+	 * @param layer
+	 *            The name of the layer, such as "threat" or "influence".
+	 * @param round
+	 *            The round the values belong to.
+	 * @see #visualise(Map, float[], ColorRamp)
+	 */
+	public void visualise(String layer, int round, Map map, float[] values, ColorRamp ramp) {
+		renderer.getValueLayer(layer)
+				.getHistory()
+				.put(round, map, values, ramp);
+		Gdx.graphics.requestRendering();
+	}
+
+	/**
+	 * Sets whether a named layer of values is shown.
+	 */
+	public void setLayerVisible(String layer, boolean visible) {
+		renderer.getValueLayer(layer)
+				.setVisible(visible);
+		Gdx.graphics.requestRendering();
+	}
 
-		// Set the value map into the renderer
-		renderer.setValueMap(valueMap);
+	/**
+	 * Sets the opacity with which a named layer of values is blended over the layers below it, in [0, 1].
+	 */
+	public void setLayerOpacity(String layer, float opacity) {
+		renderer.getValueLayer(layer)
+				.setOpacity(opacity);
+		Gdx.graphics.requestRendering();
+	}
+
+	/**
+	 * Returns the round values are stored for when no round is given, which is the round of the last state that was
+	 * added. Values visualised before any state was added are stored under {@link ValueMap#ANY_ROUND}, and shown for
+	 * every round that has no values of its own.
+	 */
+	private int getVisualisedRound() {
+		HunterKillerState state = getLastState();
+		return state != null ? state.getCurrentRound() : ValueMap.ANY_ROUND;
 	}
 }
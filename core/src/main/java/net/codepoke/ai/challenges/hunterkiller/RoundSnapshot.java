@@ -0,0 +1,184 @@
+package net.codepoke.ai.challenges.hunterkiller;
+
+import java.util.Arrays;
+
+import net.codepoke.ai.challenge.hunterkiller.HunterKillerConstants;
+import net.codepoke.ai.challenge.hunterkiller.HunterKillerState;
+import net.codepoke.ai.challenge.hunterkiller.Map;
+import net.codepoke.ai.challenge.hunterkiller.Player;
+import net.codepoke.ai.challenge.hunterkiller.gameobjects.GameObject;
+import net.codepoke.ai.challenge.hunterkiller.gameobjects.mapfeature.Door;
+import net.codepoke.ai.challenge.hunterkiller.gameobjects.mapfeature.Structure;
+import net.codepoke.ai.challenge.hunterkiller.gameobjects.unit.Unit;
+import net.codepoke.ai.challenges.hunterkiller.ui.StateSnapshot;
+
+/**
+ * The part of a {@link HunterKillerState} that the {@link HunterKillerRenderer} needs to draw a round, stored in
+ * columns of primitives instead of as an object graph. A snapshot is created for every state when it is added to the
+ * {@link HunterKillerVisualization}, and is not changed afterwards.
+ *
+ * The features of the map that never change (walls, floors and space) are not part of the columns, they are drawn from
+ * the {@link #map}. The snapshots of a match share the map of its first state, and the names of its players, so only
+ * the columns take memory for every round.
+ *
+ * @author Anton Valkenberg (anton.valkenberg@gmail.com)
+ *
+ */
+public class RoundSnapshot
+		implements StateSnapshot {
+
+	/** The value of {@link #doorTimers} for doors that are closed. */
+	public static final byte DOOR_CLOSED = -1;
+
+	/** The map of the match, of which only the features that never change should be read. */
+	public final Map map;
+
+	/** The round, and the ID of the player whose turn it is. */
+	public final int round, currentPlayer;
+
+	/** The size of the map. */
+	public final int width, height;
+
+	/** Per door: its position on the map, and the time it remains open (or {@link #DOOR_CLOSED}). */
+	public final int doorCount;
+	public final int[] doorPositions;
+	public final byte[] doorTimers;
+
+	/** Per structure: its position on the map, type index, controlling player (or no control) and health. */
+	public final int structureCount;
+	public final int[] structurePositions;
+	public final byte[] structureTypes, structurePlayers;
+	public final short[] structureHp;
+
+	/**
+	 * Per unit: its ID, position on the map, type index, controlling player, orientation (ordinal of its direction),
+	 * health, maximum health and special attack cooldown.
+	 */
+	public final int unitCount;
+	public final int[] unitIDs, unitPositions;
+	public final byte[] unitTypes, unitPlayers, unitOrientations;
+	public final short[] unitHp, unitHpMax, unitCooldowns;
+
+	/** Per player (indexed on ID): their name, score and resources. */
+	public final String[] names;
+	public final int[] scores, resources;
+
+	/**
+	 * Encodes a state into a new snapshot.
+	 *
+	 * @param state
+	 *            The state to encode.
+	 * @param previous
+	 *            The snapshot of an earlier state of the same match, whose map and player names are shared. Null for
+	 *            the first state of a match.
+	 */
+	public RoundSnapshot(HunterKillerState state, RoundSnapshot previous) {
+		Map stateMap = state.getMap();
+		GameObject[][] objects = stateMap.getMapContent();
+
+		round = state.getCurrentRound();
+		currentPlayer = state.getCurrentPlayer();
+		width = stateMap.getMapWidth();
+		height = stateMap.getMapHeight();
+		map = previous != null && previous.width == width && previous.height == height ? previous.map : stateMap;
+
+		// Count the objects first, so every column is created at its final size
+		int doors = 0, structures = 0, units = 0;
+		for (int position = 0; position < objects.length; position++) {
+			GameObject feature = objects[position][HunterKillerConstants.MAP_INTERNAL_FEATURE_INDEX];
+			if (feature instanceof Door)
+				doors++;
+			else if (feature instanceof Structure)
+				structures++;
+			if (objects[position][HunterKillerConstants.MAP_INTERNAL_UNIT_INDEX] != null)
+				units++;
+		}
+
+		doorCount = doors;
+		doorPositions = new int[doors];
+		doorTimers = new byte[doors];
+
+		structureCount = structures;
+		structurePositions = new int[structures];
+		structureTypes = new byte[structures];
+		structurePlayers = new byte[structures];
+		structureHp = new short[structures];
+
+		unitCount = units;
+		unitIDs = new int[units];
+		unitPositions = new int[units];
+		unitTypes = new byte[units];
+		unitPlayers = new byte[units];
+		unitOrientations = new byte[units];
+		unitHp = new short[units];
+		unitHpMax = new short[units];
+		unitCooldowns = new short[units];
+
+		int door = 0, structure = 0, unit = 0;
+		for (int position = 0; position < objects.length; position++) {
+			GameObject feature = objects[position][HunterKillerConstants.MAP_INTERNAL_FEATURE_INDEX];
+
+			if (feature instanceof Door) {
+				Door doorFeature = (Door) feature;
+				doorPositions[door] = position;
+				doorTimers[door] = doorFeature.isOpen() ? (byte) Math.min(doorFeature.getOpenTimer(), Byte.MAX_VALUE) : DOOR_CLOSED;
+				door++;
+			} else if (feature instanceof Structure) {
+				Structure structureFeature = (Structure) feature;
+				structurePositions[structure] = position;
+				structureTypes[structure] = (byte) HunterKillerRegions.getStructureTypeIndex(structureFeature.getType());
+				structurePlayers[structure] = (byte) structureFeature.getControllingPlayerID();
+				structureHp[structure] = (short) structureFeature.getHpCurrent();
+				structure++;
+			}
+
+			GameObject object = objects[position][HunterKillerConstants.MAP_INTERNAL_UNIT_INDEX];
+			if (object != null) {
+				Unit unitObject = (Unit) object;
+				unitIDs[unit] = unitObject.getID();
+				unitPositions[unit] = position;
+				unitTypes[unit] = (byte) HunterKillerRegions.getUnitTypeIndex(unitObject);
+				unitPlayers[unit] = (byte) unitObject.getControllingPlayerID();
+				unitOrientations[unit] = (byte) unitObject.getOrientation()
+															.ordinal();
+				unitHp[unit] = (short) unitObject.getHpCurrent();
+				unitHpMax[unit] = (short) unitObject.getHpMax();
+				unitCooldowns[unit] = (short) unitObject.getSpecialAttackCooldown();
+				unit++;
+			}
+		}
+
+		Player[] players = state.getPlayers();
+		scores = new int[players.length];
+		resources = new int[players.length];
+		for (int i = 0; i < players.length; i++) {
+			scores[i] = players[i].getScore();
+			resources[i] = players[i].getResource();
+		}
+
+		String[] stateNames = HunterKillerVisualization.getPlayerNames(state);
+		names = previous != null && Arrays.equals(previous.names, stateNames) ? previous.names : stateNames;
+	}
+
+	@Override
+	public String[] getPlayers() {
+		return names;
+	}
+
+	@Override
+	public int[] getScores() {
+		return scores;
+	}
+
+	/**
+	 * Returns the index of the unit with the given ID, or -1 if there is no such unit.
+	 */
+	public int indexOfUnit(int unitID) {
+		for (int i = 0; i < unitCount; i++) {
+			if (unitIDs[i] == unitID)
+				return i;
+		}
+		return -1;
+	}
+
+}
@@ -0,0 +1,93 @@
+package net.codepoke.ai.challenges.hunterkiller;
+
+import com.badlogic.gdx.graphics.Texture;
+import com.badlogic.gdx.math.MathUtils;
+import com.badlogic.gdx.utils.Disposable;
+
+/**
+ * A named overlay of values, such as threat or influence, which can be toggled and blended independently of the other
+ * overlays. Each layer keeps its own {@link ValueMapHistory} and its own {@link ValueMap} texture.
+ *
+ * @author Anton Valkenberg (anton.valkenberg@gmail.com)
+ *
+ */
+public class ValueLayer
+		implements Disposable {
+
+	/** The name of the layer. */
+	private final String name;
+
+	/** The values of the layer as they are drawn. */
+	private final ValueMap valueMap = new ValueMap();
+
+	/** The values of the layer per round. */
+	private final ValueMapHistory history = new ValueMapHistory();
+
+	/** Whether the layer is drawn. */
+	private volatile boolean visible = true;
+
+	/** The opacity with which the layer is blended over the layers below it, in [0, 1]. */
+	private volatile float opacity = 1;
+
+	public ValueLayer(String name) {
+		this.name = name;
+	}
+
+	/**
+	 * Prepares the layer for drawing a round, uploading its values if they changed. Needs to be called on the rendering
+	 * thread.
+	 *
+	 * @return Whether the layer has any values to draw in the round.
+	 */
+	public boolean update(int round) {
+		history.show(round, valueMap);
+		return valueMap.update(round);
+	}
+
+	/** Returns the texture containing the values, as of the last {@link #update(int)}. */
+	public Texture getTexture() {
+		return valueMap.getTexture();
+	}
+
+	/** Returns the name of the layer. */
+	public String getName() {
+		return name;
+	}
+
+	/** Returns the values of the layer as they are drawn. */
+	public ValueMap getValueMap() {
+		return valueMap;
+	}
+
+	/** Returns the values of the layer per round. */
+	public ValueMapHistory getHistory() {
+		return history;
+	}
+
+	/** Returns whether the layer is drawn. */
+	public boolean isVisible() {
+		return visible;
+	}
+
+	/** Sets whether the layer is drawn. */
+	public void setVisible(boolean visible) {
+		this.visible = visible;
+	}
+
+	/** Returns the opacity with which the layer is blended over the layers below it. */
+	public float getOpacity() {
+		return opacity;
+	}
+
+	/** Sets the opacity with which the layer is blended over the layers below it, clamped to [0, 1]. */
+	public void setOpacity(float opacity) {
+		this.opacity = MathUtils.clamp(opacity, 0, 1);
+	}
+
+	@Override
+	public void dispose() {
+		valueMap.dispose();
+		history.clear();
+	}
+
+}
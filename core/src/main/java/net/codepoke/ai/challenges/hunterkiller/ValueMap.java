@@ -0,0 +1,184 @@
+package net.codepoke.ai.challenges.hunterkiller;
+
+import com.badlogic.gdx.graphics.Color;
+import com.badlogic.gdx.graphics.Pixmap;
+import com.badlogic.gdx.graphics.Pixmap.Blending;
+import com.badlogic.gdx.graphics.Pixmap.Format;
+import com.badlogic.gdx.graphics.Texture;
+import com.badlogic.gdx.graphics.Texture.TextureFilter;
+import com.badlogic.gdx.utils.Disposable;
+
+/**
+ * A layer of values painted over the map, stored as one packed RGBA texel per tile. The values can be set from any
+ * thread, they are uploaded to the texture on the rendering thread the next time the layer is drawn.
+ *
+ * The rows of the texture are the rows of the map, so the texture can be drawn as a single quad over the board.
+ *
+ * @author Anton Valkenberg (anton.valkenberg@gmail.com)
+ *
+ */
+public class ValueMap
+		implements Disposable {
+
+	/** The round of values that are not bound to a specific round, these are shown until the state changes. */
+	public static final int ANY_ROUND = -1;
+
+	/** The colors of the tiles, indexed on X and Y coordinate on the map. */
+	private Pixmap pixmap;
+
+	/** The texture the colors are uploaded to, created on the rendering thread. */
+	private Texture texture;
+
+	/** Whether the pixmap has changed since it was last uploaded. */
+	private boolean dirty = false;
+
+	/** Whether any values have been set. */
+	private boolean set = false;
+
+	/** The round the values belong to, or {@link #ANY_ROUND}. */
+	private int round = ANY_ROUND;
+
+	/** Incremented whenever the values are changed or cleared. */
+	private long version = 0;
+
+	/**
+	 * Sets the values of the layer from their quantized form, coloring them through a precomputed ramp. This does not
+	 * allocate anything once the layer has been used for a map of the same size.
+	 *
+	 * @param width
+	 * @param height
+	 *            The size of the map.
+	 * @param values
+	 *            The quantized values of the tiles (see {@link ColorRamp#quantize(float)}), row by row.
+	 * @param ramp
+	 *            The ramp used to color the values.
+	 * @param round
+	 *            The round the values belong to, they will only be shown while this round is shown. Use
+	 *            {@link #ANY_ROUND} to show them until the state changes.
+	 */
+	public synchronized void setQuantized(int width, int height, byte[] values, ColorRamp ramp, int round) {
+		resize(width, height);
+
+		// Translucent colors should replace the previous values, not be blended with them
+		Blending blending = Pixmap.getBlending();
+		Pixmap.setBlending(Blending.None);
+		for (int y = 0; y < height; y++) {
+			for (int x = 0; x < width; x++) {
+				pixmap.drawPixel(x, y, ramp.getQuantized(values[y * width + x] & 0xFF));
+			}
+		}
+		Pixmap.setBlending(blending);
+
+		dirty = true;
+		set = true;
+		this.round = round;
+		version++;
+	}
+
+	/**
+	 * Sets the colors of the layer.
+	 *
+	 * @param colors
+	 *            The colors of the tiles, indexed on X and Y coordinate on the map.
+	 */
+	public synchronized void setColors(Color[][] colors) {
+		int width = colors.length, height = colors[0].length;
+		resize(width, height);
+
+		// Translucent colors should replace the previous values, not be blended with them
+		Blending blending = Pixmap.getBlending();
+		Pixmap.setBlending(Blending.None);
+		for (int x = 0; x < width; x++) {
+			for (int y = 0; y < height; y++) {
+				pixmap.drawPixel(x, y, Color.rgba8888(colors[x][y]));
+			}
+		}
+		Pixmap.setBlending(blending);
+
+		dirty = true;
+		set = true;
+		round = ANY_ROUND;
+		version++;
+	}
+
+	/** Removes the values of the layer, it will not be drawn until new values are set. */
+	public synchronized void clear() {
+		set = false;
+		version++;
+	}
+
+	/**
+	 * Removes the values of the layer if they are not bound to a specific round, which is done whenever the state
+	 * changes.
+	 */
+	public synchronized void clearUnbound() {
+		if (round == ANY_ROUND && set) {
+			set = false;
+			version++;
+		}
+	}
+
+	/** Returns the round the values belong to, or {@link #ANY_ROUND}. */
+	public synchronized int getRound() {
+		return round;
+	}
+
+	/** Returns a number that changes whenever the values are changed or cleared. */
+	public synchronized long getVersion() {
+		return version;
+	}
+
+	/**
+	 * Uploads the values to the texture if they have changed. Needs to be called on the rendering thread.
+	 *
+	 * @param round
+	 *            The round that is being shown.
+	 * @return Whether the layer has any values to draw in the given round.
+	 */
+	public synchronized boolean update(int round) {
+		if (!set || (this.round != ANY_ROUND && this.round != round))
+			return false;
+
+		if (dirty) {
+			if (texture == null || texture.getWidth() != pixmap.getWidth() || texture.getHeight() != pixmap.getHeight()) {
+				if (texture != null)
+					texture.dispose();
+				texture = new Texture(pixmap);
+				texture.setFilter(TextureFilter.Nearest, TextureFilter.Nearest);
+			} else {
+				texture.draw(pixmap, 0, 0);
+			}
+			dirty = false;
+		}
+		return true;
+	}
+
+	/** Returns the texture containing the values, as of the last {@link #update(int)}. */
+	public Texture getTexture() {
+		return texture;
+	}
+
+	/** Makes sure the pixmap has the given size. */
+	private void resize(int width, int height) {
+		if (pixmap != null && pixmap.getWidth() == width && pixmap.getHeight() == height)
+			return;
+
+		if (pixmap != null)
+			pixmap.dispose();
+		pixmap = new Pixmap(width, height, Format.RGBA8888);
+	}
+
+	@Override
+	public synchronized void dispose() {
+		if (texture != null) {
+			texture.dispose();
+			texture = null;
+		}
+		if (pixmap != null) {
+			pixmap.dispose();
+			pixmap = null;
+		}
+		set = false;
+	}
+
+}
@@ -0,0 +1,208 @@
+package net.codepoke.ai.challenges.hunterkiller;
+
+import net.codepoke.ai.challenge.hunterkiller.Map;
+
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.IntMap;
+
+/**
+ * The value maps that have been visualised, per round. Values are stored quantized to one byte per tile (see
+ * {@link ColorRamp#quantize(float)}), together with the ramp used to color them. When the history grows beyond its
+ * memory budget, the rounds that have been used least recently are evicted.
+ *
+ * Values can be added from any thread, the history is consulted on the rendering thread whenever a round is drawn.
+ *
+ * @author Anton Valkenberg (anton.valkenberg@gmail.com)
+ *
+ */
+public class ValueMapHistory {
+
+	/** The default memory budget, in bytes of stored values. */
+	public static final int DEFAULT_BUDGET = 32 * 1024 * 1024;
+
+	/** The stored value maps, indexed on round. */
+	private IntMap<Entry> entries = new IntMap<Entry>();
+
+	/** Evicted entries, which are reused for new rounds. Cleared whenever the size of the map changes. */
+	private Array<Entry> pool = new Array<Entry>();
+
+	/** The size of the map the values belong to, the history is cleared when this changes. */
+	private int width = -1, height = -1;
+
+	/** The maximum amount of bytes of values to store. */
+	private int budget = DEFAULT_BUDGET;
+
+	/** Counter used to order the entries on when they were last used. */
+	private long clock = 0;
+
+	/**
+	 * The round and version of the entry that was last copied into a {@link ValueMap}, and the version of the value map
+	 * right after copying. If the value map changed since, the entry needs to be copied again.
+	 */
+	private int shownRound = ValueMap.ANY_ROUND;
+	private long shownVersion = -1, shownMapVersion = -1;
+
+	/**
+	 * Stores the values of a round, replacing any values it had before.
+	 *
+	 * @param round
+	 *            The round the values belong to.
+	 * @param map
+	 *            The map the values belong to.
+	 * @param values
+	 *            Normalised values, indexed on their position on the map (see {@link Map#toPosition(int, int)}).
+	 * @param ramp
+	 *            The ramp used to color the values.
+	 */
+	public synchronized void put(int round, Map map, float[] values, ColorRamp ramp) {
+		int mapWidth = map.getMapWidth(), mapHeight = map.getMapHeight();
+		if (values.length < mapWidth * mapHeight)
+			throw new RuntimeException("Error: Expected " + (mapWidth * mapHeight) + " values for the map, got " + values.length);
+
+		byte[] quantized = obtain(round, mapWidth, mapHeight, ramp);
+		for (int y = 0; y < mapHeight; y++) {
+			for (int x = 0; x < mapWidth; x++) {
+				quantized[y * mapWidth + x] = ColorRamp.quantize(values[map.toPosition(x, y)]);
+			}
+		}
+	}
+
+	/**
+	 * Stores the values of a round, replacing any values it had before.
+	 *
+	 * @param round
+	 *            The round the values belong to.
+	 * @param values
+	 *            Normalised values, indexed on X and Y coordinate on the map.
+	 * @param ramp
+	 *            The ramp used to color the values.
+	 */
+	public synchronized void put(int round, float[][] values, ColorRamp ramp) {
+		int mapWidth = values.length, mapHeight = values[0].length;
+
+		byte[] quantized = obtain(round, mapWidth, mapHeight, ramp);
+		for (int x = 0; x < mapWidth; x++) {
+			for (int y = 0; y < mapHeight; y++) {
+				quantized[y * mapWidth + x] = ColorRamp.quantize(values[x][y]);
+			}
+		}
+	}
+
+	/**
+	 * Copies the values of a round into the value map, if there are any and they have not been copied already. Rounds
+	 * without values of their own show the values stored under {@link ValueMap#ANY_ROUND}, if any. Needs to be called
+	 * on the rendering thread.
+	 *
+	 * @return Whether the round has any values stored.
+	 */
+	public synchronized boolean show(int round, ValueMap valueMap) {
+		Entry entry = entries.get(round);
+		if (entry == null) {
+			round = ValueMap.ANY_ROUND;
+			entry = entries.get(round);
+			if (entry == null)
+				return false;
+		}
+
+		entry.lastUsed = ++clock;
+		if (round != shownRound || entry.version != shownVersion || valueMap.getVersion() != shownMapVersion) {
+			valueMap.setQuantized(width, height, entry.values, entry.ramp, round);
+			shownRound = round;
+			shownVersion = entry.version;
+			shownMapVersion = valueMap.getVersion();
+		}
+		return true;
+	}
+
+	/** Returns whether any values are stored for the round. */
+	public synchronized boolean contains(int round) {
+		return entries.containsKey(round);
+	}
+
+	/** Returns the amount of rounds that have values stored. */
+	public synchronized int size() {
+		return entries.size;
+	}
+
+	/** Sets the maximum amount of bytes of values to store, evicting rounds if needed. */
+	public synchronized void setBudget(int budget) {
+		this.budget = budget;
+		evict(0);
+	}
+
+	/** Returns the maximum amount of bytes of values to store. */
+	public synchronized int getBudget() {
+		return budget;
+	}
+
+	/** Removes all stored values. */
+	public synchronized void clear() {
+		entries.clear();
+		pool.clear();
+		shownRound = ValueMap.ANY_ROUND;
+		shownVersion = -1;
+	}
+
+	/**
+	 * Returns the array into which the values of a round should be quantized, evicting other rounds if the history
+	 * would otherwise grow beyond its budget.
+	 */
+	private byte[] obtain(int round, int mapWidth, int mapHeight, ColorRamp ramp) {
+		if (mapWidth != width || mapHeight != height) {
+			clear();
+			width = mapWidth;
+			height = mapHeight;
+		}
+
+		Entry entry = entries.get(round);
+		if (entry == null) {
+			evict(width * height);
+			entry = pool.size > 0 ? pool.pop() : new Entry(width * height);
+			entries.put(round, entry);
+		}
+
+		entry.ramp = ramp;
+		entry.version = ++clock;
+		entry.lastUsed = clock;
+		return entry.values;
+	}
+
+	/** Evicts the least recently used rounds until the given amount of bytes can be added within the budget. */
+	private void evict(int required) {
+		while (entries.size > 0 && (long) entries.size * width * height + required > budget) {
+			int oldestRound = 0;
+			long oldest = Long.MAX_VALUE;
+			for (IntMap.Entry<Entry> entry : entries.entries()) {
+				if (entry.value.lastUsed < oldest) {
+					oldest = entry.value.lastUsed;
+					oldestRound = entry.key;
+				}
+			}
+			// Keep a single evicted entry around, so its values can be reused by the round that is being added
+			Entry evicted = entries.remove(oldestRound);
+			if (pool.size == 0)
+				pool.add(evicted);
+		}
+	}
+
+	/**
+	 * The values stored for a single round.
+	 */
+	private static class Entry {
+
+		/** The quantized values, row by row. */
+		public final byte[] values;
+
+		/** The ramp used to color the values. */
+		public ColorRamp ramp;
+
+		/** When the values were last changed and used, according to the history's clock. */
+		public long version, lastUsed;
+
+		public Entry(int size) {
+			values = new byte[size];
+		}
+
+	}
+
+}
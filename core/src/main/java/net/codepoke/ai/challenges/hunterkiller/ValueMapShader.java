@@ -0,0 +1,174 @@
+package net.codepoke.ai.challenges.hunterkiller;
+
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.graphics.GL20;
+import com.badlogic.gdx.graphics.Texture;
+import com.badlogic.gdx.graphics.g2d.Batch;
+import com.badlogic.gdx.graphics.g2d.TextureRegion;
+import com.badlogic.gdx.graphics.glutils.ShaderProgram;
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.Disposable;
+import com.badlogic.gdx.utils.FloatArray;
+
+/**
+ * Shader that draws {@link ValueMap}s as a single quad over the board. Up to {@link #MAX_LAYERS} value maps are
+ * blended over each other in one pass, each with its own opacity. Every tile is drawn as the pattern of a region (such
+ * as the plus of <code>map/value</code>), tinted with the blended color of the tile's texels.
+ *
+ * @author Anton Valkenberg (anton.valkenberg@gmail.com)
+ *
+ */
+public class ValueMapShader
+		implements Disposable {
+
+	/** The amount of value maps that are blended in a single pass. */
+	public static final int MAX_LAYERS = 4;
+
+	/** The texture unit the pattern is bound to, the value maps use the units before it. */
+	private static final int PATTERN_UNIT = MAX_LAYERS;
+
+	private static final String VERTEX_SHADER = "attribute vec4 " + ShaderProgram.POSITION_ATTRIBUTE + ";\n"
+												+ "attribute vec4 " + ShaderProgram.COLOR_ATTRIBUTE + ";\n"
+												+ "attribute vec2 " + ShaderProgram.TEXCOORD_ATTRIBUTE + "0;\n"
+												+ "uniform mat4 u_projTrans;\n"
+												+ "varying vec4 v_color;\n"
+												+ "varying vec2 v_texCoords;\n"
+												+ "\n"
+												+ "void main() {\n"
+												+ "   v_color = " + ShaderProgram.COLOR_ATTRIBUTE + ";\n"
+												+ "   v_color.a = v_color.a * (255.0/254.0);\n"
+												+ "   v_texCoords = " + ShaderProgram.TEXCOORD_ATTRIBUTE + "0;\n"
+												+ "   gl_Position = u_projTrans * " + ShaderProgram.POSITION_ATTRIBUTE + ";\n"
+												+ "}\n";
+
+	private static final String FRAGMENT_SHADER = "#ifdef GL_ES\n"
+													+ "#define LOWP lowp\n"
+													+ "precision mediump float;\n"
+													+ "#else\n"
+													+ "#define LOWP \n"
+													+ "#endif\n"
+													+ "varying LOWP vec4 v_color;\n"
+													+ "varying vec2 v_texCoords;\n"
+													+ "uniform sampler2D u_texture;\n"
+													+ "uniform sampler2D u_layer1;\n"
+													+ "uniform sampler2D u_layer2;\n"
+													+ "uniform sampler2D u_layer3;\n"
+													+ "uniform sampler2D u_pattern;\n"
+													+ "uniform vec4 u_opacity;\n"
+													+ "uniform vec2 u_mapSize;\n"
+													+ "uniform vec4 u_patternRegion;\n"
+													+ "\n"
+													// Blends a layer over the (premultiplied) color of the layers below it
+													+ "vec4 over(vec4 below, vec4 layer, float opacity) {\n"
+													+ "  float alpha = layer.a * opacity;\n"
+													+ "  return vec4(below.rgb * (1.0 - alpha) + layer.rgb * alpha, below.a * (1.0 - alpha) + alpha);\n"
+													+ "}\n"
+													+ "\n"
+													+ "void main() {\n"
+													+ "  vec4 color = over(vec4(0.0), texture2D(u_texture, v_texCoords), u_opacity.x);\n"
+													+ "  color = over(color, texture2D(u_layer1, v_texCoords), u_opacity.y);\n"
+													+ "  color = over(color, texture2D(u_layer2, v_texCoords), u_opacity.z);\n"
+													+ "  color = over(color, texture2D(u_layer3, v_texCoords), u_opacity.w);\n"
+													+ "  if (color.a > 0.0)\n"
+													+ "    color.rgb /= color.a;\n"
+													+ "  vec2 tile = fract(v_texCoords * u_mapSize);\n"
+													+ "  vec4 pattern = texture2D(u_pattern, u_patternRegion.xy + tile * u_patternRegion.zw);\n"
+													+ "  gl_FragColor = v_color * color * pattern;\n"
+													+ "}";
+
+	/** The shader, null if it failed to compile. */
+	private ShaderProgram shader;
+
+	/** The opacities of the layers in a single pass. */
+	private final float[] opacity = new float[MAX_LAYERS];
+
+	public ValueMapShader() {
+		shader = new ShaderProgram(VERTEX_SHADER, FRAGMENT_SHADER);
+		if (!shader.isCompiled()) {
+			Gdx.app.error("ValueMapShader", "Could not compile the value map shader: " + shader.getLog());
+			shader.dispose();
+			shader = null;
+		}
+	}
+
+	/** Returns whether the shader is available, if not the value maps are drawn one by one without a pattern. */
+	public boolean isAvailable() {
+		return shader != null;
+	}
+
+	/**
+	 * Draws value maps over the board, blended in order. If there are more than {@link #MAX_LAYERS} value maps they
+	 * are drawn in multiple passes.
+	 *
+	 * @param batch
+	 *            The batch that is drawing.
+	 * @param pattern
+	 *            The region that is drawn on every tile, tinted with the value of the tile.
+	 * @param textures
+	 *            The textures of the value maps, from bottom to top.
+	 * @param opacities
+	 *            The opacity of each of the value maps.
+	 * @param x
+	 * @param y
+	 *            The position at which the board is drawn.
+	 * @param width
+	 * @param height
+	 *            The size at which the board is drawn.
+	 * @param mapWidth
+	 * @param mapHeight
+	 *            The size of the map in tiles.
+	 */
+	public void draw(Batch batch, TextureRegion pattern, Array<Texture> textures, FloatArray opacities, float x, float y,
+			float width, float height, int mapWidth, int mapHeight) {
+		if (shader == null) {
+			// Without the shader, simply draw the value maps over each other
+			float color = batch.getPackedColor();
+			for (int i = 0; i < textures.size; i++) {
+				batch.setColor(1, 1, 1, opacities.get(i));
+				batch.draw(textures.get(i), x, y, width, height);
+			}
+			batch.setColor(color);
+			return;
+		}
+
+		batch.setShader(shader);
+		for (int start = 0; start < textures.size; start += MAX_LAYERS) {
+			// The first layer of the pass is drawn by the batch, which binds it to unit 0. Units of layers that are not
+			// used in this pass are bound to the first layer, and have no opacity.
+			for (int i = 0; i < MAX_LAYERS; i++) {
+				int layer = start + i;
+				boolean used = layer < textures.size;
+				opacity[i] = used ? opacities.get(layer) : 0;
+				if (i > 0)
+					textures.get(used ? layer : start)
+							.bind(i);
+			}
+			pattern.getTexture()
+					.bind(PATTERN_UNIT);
+			Gdx.gl.glActiveTexture(GL20.GL_TEXTURE0);
+
+			shader.setUniformi("u_layer1", 1);
+			shader.setUniformi("u_layer2", 2);
+			shader.setUniformi("u_layer3", 3);
+			shader.setUniformi("u_pattern", PATTERN_UNIT);
+			shader.setUniformf("u_opacity", opacity[0], opacity[1], opacity[2], opacity[3]);
+			shader.setUniformf("u_mapSize", mapWidth, mapHeight);
+			shader.setUniformf("u_patternRegion", pattern.getU(), pattern.getV(), pattern.getU2() - pattern.getU(), pattern.getV2() - pattern.getV());
+
+			batch.draw(textures.get(start), x, y, width, height);
+
+			// The uniforms and bound units of the next pass can only be changed once this pass has been drawn
+			batch.flush();
+		}
+		batch.setShader(null);
+	}
+
+	@Override
+	public void dispose() {
+		if (shader != null) {
+			shader.dispose();
+			shader = null;
+		}
+	}
+
+}
@@ -20,6 +20,15 @@ import com.badlogic.gdx.utils.Align;
 public class MatchControls
 		extends Table {
 
+	/**
+	 * The time in seconds between two steps of the playback, each step moves the timeline by the playback speed. At 1x
+	 * this shows 8 states per second.
+	 */
+	public static final float PLAYBACK_INTERVAL = 0.125f;
+
+	/** The highest playback speed, in both directions. */
+	public static final int MAX_PLAYBACK_SPEED = 64;
+
 	MatchFrame parent;
 
 	// The skin for this UI Widget
@@ -162,7 +171,7 @@ public class MatchControls
 				else if (playbackSpeed <= -1)
 					playbackSpeed *= 2;
 
-				playbackSpeed = Math.max(-64, playbackSpeed);
+				playbackSpeed = Math.max(-MAX_PLAYBACK_SPEED, playbackSpeed);
 				speedLbl.setText((playbackSpeed < 0 ? "<< " : ">> ") + playbackSpeed + "x");
 				Gdx.graphics.requestRendering();
 			}
@@ -179,7 +188,7 @@ public class MatchControls
 				else if (playbackSpeed <= -1)
 					playbackSpeed /= 2;
 
-				playbackSpeed = Math.min(64, playbackSpeed);
+				playbackSpeed = Math.min(MAX_PLAYBACK_SPEED, playbackSpeed);
 				speedLbl.setText((playbackSpeed < 0 ? "<< " : ">> ") + playbackSpeed + "x");
 				Gdx.graphics.requestRendering();
 			}
@@ -262,7 +271,7 @@ public class MatchControls
 			Gdx.graphics.requestRendering();
 		}
 
-		if (currentDt > 0.125f) {
+		if (currentDt > PLAYBACK_INTERVAL) {
 			currentDt = 0;
 			if (playingBack) {
 				timeline.setValue(timeline.getValue() + playbackSpeed);
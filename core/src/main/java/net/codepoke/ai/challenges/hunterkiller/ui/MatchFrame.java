@@ -25,6 +25,12 @@ import com.badlogic.gdx.utils.viewport.ScreenViewport;
 public abstract class MatchFrame<S extends State, A extends Action>
 		extends ApplicationAdapter {
 
+	/**
+	 * The maximum amount of added states taken in per frame. Larger bursts are spread over multiple frames, so the
+	 * timeline grows while the rest of the match is still being taken in.
+	 */
+	public static final int MAX_STATES_PER_FRAME = 256;
+
 	// The root on which we layout the UI and rendering of the state.
 	Stage stage;
 
@@ -52,16 +58,35 @@ public abstract class MatchFrame<S extends State, A extends Action>
 	// Variables used for handling and interacting with state
 	MatchMessageParser<S, A> parser;
 
-	/** The states available for rendering. */
-	Array<S> states;
+	/** The rules of the game, used to rebuild states that are not kept in full. */
+	GameRules<S, A> rules;
+
+	/**
+	 * The states available for rendering, the actions that led to them and their snapshots. Only used on the rendering
+	 * thread.
+	 */
+	StateHistory<S, A> history;
+
+	/** The states that have been added, but have not been moved into the {@link #history} by the rendering thread yet. */
+	StateQueue<S, A> pendingStates = new StateQueue<S, A>();
+
+	/** The last state that was added, which may still be pending. */
+	volatile S lastState;
+
+	/** The amount of states that have been added, and the amount that have been taken in by the rendering thread. */
+	volatile int addedStates, takenStates;
 
-	/** The actions that led to state X. */
-	Array<A> actions;
+	/** The index of the state that is currently displayed, -1 if none. */
+	int displayedState = -1;
+
+	/** Whether the match was cleared, so the frame is resized to the next match once its first state is shown. */
+	boolean cleared = false;
 
 	// The ideal width/height for this Visualization, only valid after setting the initial state.
 	int width = 640, height = 480;
 
 	public MatchFrame(GameRules<S, A> rules) {
+		this.rules = rules;
 		this.parser = new MatchMessageParser<S, A>(rules);
 		this.parser.addStateListeners(new StateCreationListener<S, A>() {
 
@@ -96,8 +121,7 @@ public abstract class MatchFrame<S extends State, A extends Action>
 		uiSkin.load(Gdx.files.internal("uiskin.json"));
 
 		stage = new Stage(new ScreenViewport());
-		states = new Array<S>();
-		actions = new Array<A>();
+		history = new StateHistory<S, A>(rules);
 
 		Gdx.input.setInputProcessor(stage);
 
@@ -145,32 +169,47 @@ public abstract class MatchFrame<S extends State, A extends Action>
 		stage.addActor(rootTable);
 	}
 
-	// Called whenever we want to display a different state
-	private final void stateChange(S newState, A action) {
+	// Called whenever we want to display a different state, previous is -1 if no state of this match was displayed
+	private final void stateChange(int previous, int index) {
+
+		A action = history.getAction(index);
+		StateSnapshot snapshot = history.getSnapshot(index);
 
-		S prevState = renderer.getState();
+		// Show the snapshot if there is one, so the state only needs to be rebuilt when something needs more than that
+		if (snapshot != null) {
+			renderer.setSnapshot(snapshot, action);
+			statistics.setStateInfo(snapshot.getPlayers(), snapshot.getScores());
+		} else {
+			S newState = history.get(index);
+			renderer.setState(newState, action);
+			statistics.setStateInfo(getPlayers(newState), getScores(newState));
+		}
 
-		renderer.setState(newState, action);
-		statistics.setStateInfo(getPlayers(newState), getScores(newState));
-		onStateChange(prevState, action, newState);
+		if (stateVisualizationListeners.size > 0)
+			onStateChange(previous >= 0 ? history.get(previous) : null, action, history.get(index));
 
-		recalculatePreferredSize(prevState == null);
+		recalculatePreferredSize(previous < 0 || cleared);
+		cleared = false;
 	}
 
 	@Override
-	public synchronized void render() {
+	public void render() {
+
+		// Take in the states that were added since the last frame, before anything looks at the history
+		drainPendingStates();
 
 		stage.act(Gdx.graphics.getDeltaTime());
 
 		int currentRound = controls.getCurrentRound();
 
-		if (currentRound < states.size) {
+		if (currentRound < history.size()) {
 			errorMessage.setVisible(false);
-			S s = states.get(currentRound);
-			A a = actions.get(currentRound);
 
-			if (renderer.getState() != s) {
-				stateChange(s, a);
+			// Only change the state when it changes, since it might need to be rebuilt
+			if (displayedState != currentRound) {
+				int previous = displayedState;
+				displayedState = currentRound;
+				stateChange(previous, currentRound);
 			}
 		} else {
 			errorMessage.setText("Downloading Match... ");
@@ -181,6 +220,7 @@ public abstract class MatchFrame<S extends State, A extends Action>
 
 	@Override
 	public void dispose() {
+		renderer.dispose();
 		stage.dispose();
 	}
 
@@ -228,20 +268,104 @@ public abstract class MatchFrame<S extends State, A extends Action>
 	/**
 	 * Adds the given state and action that led to it to the Visualization and requesting a new render.
 	 * The action is null for the initial state.
+	 *
+	 * This can be called from any single thread, such as the one parsing the match. The snapshot of the state is
+	 * created on that thread, after which the state is handed over to the rendering thread without locking, which
+	 * takes it in at the start of the next frame.
 	 */
-	public synchronized void addState(S state, A action) {
-		states.add(state);
-		actions.add(action);
-		controls.setStateRange(states.size - 1);
-		controls.invalidateHierarchy();
+	public void addState(S state, A action) {
+		addState(state, action, createSnapshot(state, action));
+	}
 
-		if (states.size == 1) {
-			stateChange(state, action);
-		}
+	/**
+	 * Adds the given state with a snapshot that was already created with {@link #createSnapshot(State, Action)}, such
+	 * as by a thread that prepares the states before they are added. Has the same threading rules as
+	 * {@link #addState(State, Action)}.
+	 */
+	public void addState(S state, A action, StateSnapshot snapshot) {
+		pendingStates.add(state, action, snapshot);
+		lastState = state;
+		addedStates++;
+		Gdx.graphics.requestRendering();
+	}
 
+	/**
+	 * Removes all states, so another match can be added. Has the same threading rules as
+	 * {@link #addState(State, Action)}: the states added after this call belong to the new match, the rendering thread
+	 * removes the old states when it reaches this point in the added states.
+	 */
+	public void clear() {
+		// A pending entry without a state marks the point at which the history is cleared
+		pendingStates.add(null, null, null);
+		lastState = null;
+		addedStates++;
 		Gdx.graphics.requestRendering();
 	}
 
+	/**
+	 * Adds the states created by applying the given actions in order to the last state that was added, such as the
+	 * actions decoded from a compact message. Has the same threading rules as {@link #addState(State, Action)}.
+	 */
+	public void addActions(Array<A> actions) {
+		addActions(actions, 0, actions.size);
+	}
+
+	/**
+	 * Adds the states created by applying the actions in the range [start, end) of the given actions, so a large batch
+	 * can be applied in parts.
+	 */
+	@SuppressWarnings("unchecked")
+	public void addActions(Array<A> actions, int start, int end) {
+		S last = lastState;
+		if (last == null)
+			throw new RuntimeException("Error: Received actions before the initial state");
+
+		for (int i = start; i < end; i++) {
+			A action = actions.get(i);
+			S state = (S) last.copy();
+			rules.handle(state, action);
+			addState(state, action);
+			last = state;
+		}
+	}
+
+	/**
+	 * Moves up to {@link #MAX_STATES_PER_FRAME} of the states that have been added into the history, and updates the
+	 * controls to the new range of states. If more states are waiting, another frame is requested to continue with them.
+	 * Called on the rendering thread.
+	 */
+	private void drainPendingStates() {
+		if (pendingStates.isEmpty())
+			return;
+
+		int taken = 0;
+		for (; taken < MAX_STATES_PER_FRAME && pendingStates.poll(); taken++) {
+			S state = pendingStates.getState();
+			A action = pendingStates.getAction();
+			if (state == null) {
+				clearHistory();
+				continue;
+			}
+
+			history.add(state, action, pendingStates.getSnapshot());
+		}
+		takenStates += taken;
+
+		controls.setStateRange(Math.max(0, history.size() - 1));
+		controls.invalidateHierarchy();
+
+		if (!pendingStates.isEmpty())
+			Gdx.graphics.requestRendering();
+	}
+
+	/** Removes the states of the previous match from the history. Called on the rendering thread. */
+	private void clearHistory() {
+		history.clear();
+		displayedState = -1;
+		cleared = true;
+		onCleared();
+	}
+
 	/** Sets the error message, and hides the board renderer. */
 	public void displayError(String error) {
 		if (error == null) {
@@ -261,13 +385,34 @@ public abstract class MatchFrame<S extends State, A extends Action>
 	}
 
 	/**
-	 * Returns the last state available in this Visualization, or null if no states are available.
+	 * Returns the amount of states that have been added, but have not been taken in by the rendering thread yet. A
+	 * growing backlog means states are added faster than they can be shown.
+	 */
+	public int getBacklog() {
+		return addedStates - takenStates;
+	}
+
+	/**
+	 * Returns the last state that was added to this Visualization, or null if no states have been added. This state
+	 * might not be available for rendering yet.
 	 */
 	public S getLastState() {
-		if (states.size == 0)
-			return null;
+		return lastState;
+	}
+
+	/**
+	 * Returns the state at the given index of the timeline, which is rebuilt if it is not kept in full. The state
+	 * should not be changed. May only be called on the rendering thread.
+	 */
+	public S getState(int index) {
+		return history.get(index);
+	}
 
-		return states.peek();
+	/**
+	 * Returns the index of the state that is currently displayed, -1 if none.
+	 */
+	public int getDisplayedState() {
+		return displayedState;
 	}
 
 	/**
@@ -312,10 +457,27 @@ public abstract class MatchFrame<S extends State, A extends Action>
 		frameResizeListeners.add(listener);
 	}
 
+	/** Called on the rendering thread when the states have been removed by {@link #clear()}. */
+	protected void onCleared() {
+	}
+
 	/** Called when the MatchVisualization has finished {@link #create()}. */
 	public void onCreate(Skin skin) {
 	}
 
+	/**
+	 * Creates the snapshot of a state that is kept for rendering it, on the thread adding the state. Frames that return
+	 * null (the default) have their renderer draw the states themselves.
+	 *
+	 * @param state
+	 *            The state that is added, which is not changed afterwards.
+	 * @param action
+	 *            The action that led to the state, null for the initial state of a match.
+	 */
+	public StateSnapshot createSnapshot(S state, A action) {
+		return null;
+	}
+
 	/** Creates the visualization which should render the state. Delayed so we can instantiate the Skin & parent. */
 	public abstract MatchRenderer<S, A> createRenderer(MatchFrame<S, A> parent, Skin skin);
 
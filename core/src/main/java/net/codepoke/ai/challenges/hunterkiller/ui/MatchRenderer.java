@@ -10,9 +10,12 @@ import com.badlogic.gdx.scenes.scene2d.ui.Widget;
 public abstract class MatchRenderer<S extends State, A extends Action>
 		extends Widget {
 
-	/** The current State we are rendering. */
+	/** The current State we are rendering, null if we are rendering from a snapshot. */
 	protected S state;
 
+	/** The snapshot of the current State we are rendering, null if we were given the State itself. */
+	protected StateSnapshot snapshot;
+
 	/** The action that led to this state, potentially null. */
 	protected A action;
 
@@ -35,6 +38,10 @@ public abstract class MatchRenderer<S extends State, A extends Action>
 
 	public abstract void onDraw(Batch batch, float parentAlpha);
 
+	/** Called when the visualization is disposed, releases any resources held by the renderer. */
+	public void dispose() {
+	}
+
 	@Override
 	public abstract float getPrefWidth();
 
@@ -49,11 +56,16 @@ public abstract class MatchRenderer<S extends State, A extends Action>
 		this.scale = scale;
 	}
 
-	/** The current state the renderer is visualizing. */
+	/** The current state the renderer is visualizing, null if it is visualizing a snapshot. */
 	public S getState() {
 		return state;
 	}
 
+	/** The snapshot of the current state the renderer is visualizing, null if it was given the state itself. */
+	public StateSnapshot getStateSnapshot() {
+		return snapshot;
+	}
+
 	/** The action that led to this state, null if initial state or going backwards. */
 	public A getAction() {
 		return action;
@@ -61,6 +73,19 @@ public abstract class MatchRenderer<S extends State, A extends Action>
 
 	public void setState(S state, A action) {
 		this.state = state;
+		this.snapshot = null;
+		this.action = action;
+		setSize(getPrefWidth(), getPrefHeight());
+		invalidateHierarchy();
+	}
+
+	/**
+	 * Sets the snapshot of the state to visualize instead of the state itself, for frames that keep snapshots (see
+	 * {@link MatchFrame#createSnapshot(State, Action)}).
+	 */
+	public void setSnapshot(StateSnapshot snapshot, A action) {
+		this.state = null;
+		this.snapshot = snapshot;
 		this.action = action;
 		setSize(getPrefWidth(), getPrefHeight());
 		invalidateHierarchy();
@@ -2,6 +2,7 @@ package net.codepoke.ai.challenges.hunterkiller.ui;
 
 import static net.codepoke.ai.challenges.hunterkiller.ui.MatchVisualizationConstants.PLAYER_TAG;
 
+import com.badlogic.gdx.scenes.scene2d.Actor;
 import com.badlogic.gdx.scenes.scene2d.ui.Cell;
 import com.badlogic.gdx.scenes.scene2d.ui.Image;
 import com.badlogic.gdx.scenes.scene2d.ui.Label;
@@ -44,8 +45,18 @@ public class MatchStatistics
 	Table scoreBar;
 
 	public MatchStatistics(MatchFrame parent, Skin skin) {
-
+		this(parent.renderer, skin);
 		this.parent = parent;
+	}
+
+	/**
+	 * Creates a scoreboard that is not part of a frame, such as when rendering off-screen.
+	 * 
+	 * @param board
+	 *            The actor showing the board, the score bar is as wide as it.
+	 */
+	public MatchStatistics(Actor board, Skin skin) {
+
 		this.skin = skin;
 
 		matchName = new Label("Local Match", skin);
@@ -70,7 +81,7 @@ public class MatchStatistics
 		row();
 
 		add(scoreBar).expandX()
-						.width(Value.percentWidth(1, parent.renderer))
+						.width(Value.percentWidth(1, board))
 						.pad(10)
 						.fill();
 
@@ -0,0 +1,74 @@
+package net.codepoke.ai.challenges.hunterkiller.ui;
+
+import com.badlogic.gdx.graphics.Color;
+import com.badlogic.gdx.graphics.g2d.Batch;
+import com.badlogic.gdx.graphics.g2d.BitmapFont;
+import com.badlogic.gdx.graphics.g2d.BitmapFontCache;
+
+/**
+ * Cache of laid-out glyphs for small non-negative integers in a single font, color and scale. Each number is laid out
+ * the first time it is drawn, after which drawing it only moves and copies the cached vertices into the batch. This
+ * avoids creating a String and a new layout every time a number is drawn.
+ *
+ * Note that the scale of the font at the moment a number is first drawn is baked into its layout, so a separate cache
+ * should be used for each scale the font is drawn at.
+ *
+ */
+public class NumberGlyphCache {
+
+	/** The largest number that will be cached, anything outside of [0, MAX_CACHED_NUMBER] is laid out every time. */
+	public static final int MAX_CACHED_NUMBER = 9999;
+
+	/** The font used to lay out the numbers. */
+	private final BitmapFont font;
+
+	/** The color the numbers are drawn in. */
+	private final Color color;
+
+	/** The laid-out numbers, indexed on their value. Filled lazily. */
+	private final BitmapFontCache[] caches;
+
+	public NumberGlyphCache(BitmapFont font, Color color) {
+		this.font = font;
+		this.color = new Color(color);
+		this.caches = new BitmapFontCache[MAX_CACHED_NUMBER + 1];
+	}
+
+	/**
+	 * Draws the number with its baseline starting at the given position, the same as
+	 * {@link BitmapFont#draw(Batch, CharSequence, float, float)} would.
+	 */
+	public void draw(Batch batch, int number, float x, float y) {
+		if (number < 0 || number > MAX_CACHED_NUMBER) {
+			// Fall back to laying out the number through the font
+			Color originalColor = font.getColor();
+			float r = originalColor.r, g = originalColor.g, b = originalColor.b, a = originalColor.a;
+			font.setColor(color);
+			font.draw(batch, Integer.toString(number), x, y);
+			font.setColor(r, g, b, a);
+			return;
+		}
+
+		BitmapFontCache cache = caches[number];
+		if (cache == null) {
+			cache = new BitmapFontCache(font, font.usesIntegerPositions());
+			cache.setColor(color);
+			cache.setText(Integer.toString(number), 0, 0);
+			caches[number] = cache;
+		}
+
+		cache.setPosition(x, y);
+		cache.draw(batch);
+	}
+
+	/** Returns the font used to lay out the numbers. */
+	public BitmapFont getFont() {
+		return font;
+	}
+
+	/** Returns the color the numbers are drawn in. */
+	public Color getColor() {
+		return color;
+	}
+
+}
@@ -0,0 +1,244 @@
+package net.codepoke.ai.challenges.hunterkiller.ui;
+
+import java.util.Arrays;
+
+import com.badlogic.gdx.graphics.Color;
+import com.badlogic.gdx.graphics.Texture;
+import com.badlogic.gdx.graphics.g2d.Batch;
+import com.badlogic.gdx.graphics.g2d.BitmapFont;
+import com.badlogic.gdx.graphics.g2d.TextureRegion;
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.FloatArray;
+import com.badlogic.gdx.utils.IntArray;
+
+/**
+ * Collects draw commands for a frame, so they can be submitted in any order and then flushed to a {@link Batch} sorted
+ * on layer, depth and texture. Sorting on texture within a layer (and depth) minimizes the amount of times the batch
+ * needs to flush because of a texture switch.
+ *
+ * All storage is reused between frames, so queueing commands does not allocate once the queue has grown to the size
+ * of a frame.
+ *
+ */
+public class RenderQueue {
+
+	/** The maximum layer that can be used, layers should be in the range [0, MAX_LAYER]. */
+	public static final int MAX_LAYER = 127;
+
+	/** The maximum depth that can be used, depths should be in the range [0, MAX_DEPTH]. */
+	public static final int MAX_DEPTH = (1 << 16) - 1;
+
+	/** The maximum amount of commands that can be queued for a single frame. */
+	public static final int MAX_COMMANDS = 1 << 24;
+
+	/** The types of commands. */
+	private static final int SPRITE = 0, NUMBER = 1, TEXT = 2;
+
+	/** The amount of floats stored for each command. */
+	private static final int STRIDE = 10;
+
+	/** Per command: its type and the number to draw (for number commands). */
+	private IntArray types = new IntArray(), values = new IntArray();
+
+	/** Per command: the region, number cache or font to draw with. */
+	private Array<Object> sources = new Array<Object>();
+
+	/** Per command: the text to draw (for text commands). */
+	private Array<String> texts = new Array<String>();
+
+	/**
+	 * Per command: color, x, y, originX, originY, width, height, scaleX, scaleY and rotation. Text commands only use the
+	 * first three.
+	 */
+	private FloatArray data = new FloatArray();
+
+	/** The sort keys of the commands, which also contain the index of the command in its lowest bits. */
+	private long[] keys = new long[64];
+
+	/** The textures we have seen, used to give each texture a small index for sorting. */
+	private Array<Texture> textures = new Array<Texture>();
+
+	/** The amount of (sorted) commands that have already been drawn by a partial flush. */
+	private int flushed = 0;
+
+	/** Temporary color used when setting the color of text. */
+	private final Color tmpColor = new Color();
+
+	/** Removes all commands from the queue. */
+	public void clear() {
+		types.clear();
+		values.clear();
+		sources.clear();
+		texts.clear();
+		data.clear();
+		flushed = 0;
+	}
+
+	/** Returns the amount of commands in the queue. */
+	public int size() {
+		return types.size;
+	}
+
+	/**
+	 * Queues drawing a region, see {@link Batch#draw(TextureRegion, float, float, float, float)}.
+	 *
+	 * @param layer
+	 *            The layer to draw on, higher layers are drawn on top of lower layers.
+	 * @param depth
+	 *            Order within a layer, higher depths are drawn on top of lower depths.
+	 * @param color
+	 *            The packed color to tint the region with.
+	 */
+	public void draw(int layer, int depth, TextureRegion region, float color, float x, float y, float width, float height) {
+		draw(layer, depth, region, color, x, y, 0, 0, width, height, 1, 1, 0);
+	}
+
+	/**
+	 * Queues drawing a region, see {@link Batch#draw(TextureRegion, float, float, float, float, float, float, float, float, float)}.
+	 *
+	 * @param layer
+	 *            The layer to draw on, higher layers are drawn on top of lower layers.
+	 * @param depth
+	 *            Order within a layer, higher depths are drawn on top of lower depths.
+	 * @param color
+	 *            The packed color to tint the region with.
+	 */
+	public void draw(int layer, int depth, TextureRegion region, float color, float x, float y, float originX, float originY,
+			float width, float height, float scaleX, float scaleY, float rotation) {
+		add(layer, depth, region.getTexture(), SPRITE, region, null, 0);
+		data.add(color);
+		data.add(x);
+		data.add(y);
+		data.add(originX);
+		data.add(originY);
+		data.add(width);
+		data.add(height);
+		data.add(scaleX);
+		data.add(scaleY);
+		data.add(rotation);
+	}
+
+	/**
+	 * Queues drawing a number through a cache of laid-out numbers, see {@link NumberGlyphCache#draw(Batch, int, float, float)}.
+	 */
+	public void drawNumber(int layer, NumberGlyphCache numbers, int number, float x, float y) {
+		add(layer, 0, numbers.getFont()
+								.getRegion()
+								.getTexture(), NUMBER, numbers, null, number);
+		addTextData(0, x, y);
+	}
+
+	/**
+	 * Queues drawing text in the given color, see {@link BitmapFont#draw(Batch, CharSequence, float, float)}.
+	 */
+	public void drawText(int layer, BitmapFont font, Color color, String text, float x, float y) {
+		add(layer, 0, font.getRegion()
+							.getTexture(), TEXT, font, text, 0);
+		addTextData(color.toFloatBits(), x, y);
+	}
+
+	/**
+	 * Draws all queued commands to the batch, sorted on layer, depth, texture and finally the order in which they were
+	 * queued, and clears the queue. The color of the batch is restored afterwards.
+	 */
+	public void flush(Batch batch) {
+		flush(batch, MAX_LAYER);
+	}
+
+	/**
+	 * Draws the queued commands up to and including the given layer, in the same order as {@link #flush(Batch)}. This
+	 * allows changing the state of the batch (such as its shader) between layers. The remaining commands stay queued
+	 * until they are flushed, no new commands should be queued in the meantime.
+	 */
+	public void flush(Batch batch, int untilLayer) {
+		int size = types.size;
+		if (flushed == size)
+			return;
+
+		if (flushed == 0)
+			Arrays.sort(keys, 0, size);
+
+		float originalColor = batch.getPackedColor();
+
+		for (; flushed < size; flushed++) {
+			if ((int) (keys[flushed] >>> 56) > untilLayer)
+				break;
+
+			int command = (int) (keys[flushed] & (MAX_COMMANDS - 1));
+			int offset = command * STRIDE;
+			float color = data.get(offset);
+
+			switch (types.get(command)) {
+			case SPRITE:
+				if (batch.getPackedColor() != color)
+					batch.setColor(color);
+				batch.draw(	(TextureRegion) sources.get(command),
+							data.get(offset + 1),
+							data.get(offset + 2),
+							data.get(offset + 3),
+							data.get(offset + 4),
+							data.get(offset + 5),
+							data.get(offset + 6),
+							data.get(offset + 7),
+							data.get(offset + 8),
+							data.get(offset + 9));
+				break;
+			case NUMBER:
+				((NumberGlyphCache) sources.get(command)).draw(batch, values.get(command), data.get(offset + 1), data.get(offset + 2));
+				break;
+			case TEXT:
+				BitmapFont font = (BitmapFont) sources.get(command);
+				Color fontColor = font.getColor();
+				float r = fontColor.r, g = fontColor.g, b = fontColor.b, a = fontColor.a;
+				Color.abgr8888ToColor(tmpColor, color);
+				font.setColor(tmpColor);
+				font.draw(batch, texts.get(command), data.get(offset + 1), data.get(offset + 2));
+				font.setColor(r, g, b, a);
+				break;
+			default:
+				throw new RuntimeException("Error: Unsupported command type (" + types.get(command) + ")");
+			}
+		}
+
+		if (batch.getPackedColor() != originalColor)
+			batch.setColor(originalColor);
+
+		if (flushed == size)
+			clear();
+	}
+
+	/** Adds the common information of a command, and creates its sort key. */
+	private void add(int layer, int depth, Texture texture, int type, Object source, String text, int value) {
+		int index = types.size;
+		if (index >= MAX_COMMANDS)
+			throw new RuntimeException("Error: RenderQueue can't hold more than " + MAX_COMMANDS + " commands");
+
+		int textureIndex = textures.indexOf(texture, true);
+		if (textureIndex < 0) {
+			textureIndex = textures.size;
+			textures.add(texture);
+		}
+
+		if (index == keys.length)
+			keys = Arrays.copyOf(keys, index * 2);
+
+		keys[index] = ((long) (layer & MAX_LAYER) << 56) | ((long) (depth & MAX_DEPTH) << 40) | ((long) (textureIndex & 0xFFFF) << 24)
+						| index;
+
+		types.add(type);
+		values.add(value);
+		sources.add(source);
+		texts.add(text);
+	}
+
+	/** Adds the data of a text command, padded to the size of a sprite command. */
+	private void addTextData(float color, float x, float y) {
+		data.add(color);
+		data.add(x);
+		data.add(y);
+		for (int i = 3; i < STRIDE; i++) {
+			data.add(0);
+		}
+	}
+
+}
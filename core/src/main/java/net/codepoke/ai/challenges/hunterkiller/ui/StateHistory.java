@@ -0,0 +1,195 @@
+package net.codepoke.ai.challenges.hunterkiller.ui;
+
+import net.codepoke.ai.Action;
+import net.codepoke.ai.GameRules;
+import net.codepoke.ai.State;
+
+import com.badlogic.gdx.utils.Array;
+
+/**
+ * Stores the states of a match compactly. Every state is kept as its {@link StateSnapshot snapshot}, which is what is
+ * shown. Only every {@link #getKeyframeInterval()}-th state (a keyframe) is kept in full, together with all actions.
+ * The full states in between are only needed when something needs more than the snapshot, such as the field-of-view,
+ * and are rebuilt on demand by applying the actions to a copy of the keyframe before them. This relies on the rules
+ * handling an action the same way every time.
+ *
+ * The most recently requested states are kept in a small cache, so stepping through or replaying the timeline
+ * only needs to rebuild a state once. The last state is always kept in full, since new states are created from it.
+ *
+ * @param <S>
+ *            The type of state.
+ * @param <A>
+ *            The type of action.
+ */
+public class StateHistory<S extends State, A extends Action> {
+
+	/** The default amount of states between keyframes. */
+	public static final int DEFAULT_KEYFRAME_INTERVAL = 32;
+
+	/** The default amount of rebuilt states that are cached. */
+	public static final int DEFAULT_CACHE_SIZE = 8;
+
+	/** The rules used to rebuild states. */
+	private final GameRules<S, A> rules;
+
+	/** The amount of states between keyframes. */
+	private final int keyframeInterval;
+
+	/** The keyframes, keyframe i is state i * keyframeInterval. */
+	private Array<S> keyframes = new Array<S>();
+
+	/** The actions that led to each state, null for the initial state. */
+	private Array<A> actions = new Array<A>();
+
+	/** The snapshot of each state, null for states that were added without one. */
+	private Array<StateSnapshot> snapshots = new Array<StateSnapshot>();
+
+	/** The last state that was added. */
+	private S last;
+
+	/** The cached states, their indices (-1 for an empty slot) and when they were last used. */
+	private final Object[] cachedStates;
+	private final int[] cachedIndices;
+	private final long[] cachedUses;
+
+	/** Counter used to order the cached states on when they were last used. */
+	private long clock = 0;
+
+	/**
+	 * Creates a history with a keyframe every {@link #DEFAULT_KEYFRAME_INTERVAL} states and a cache of
+	 * {@link #DEFAULT_CACHE_SIZE} states.
+	 */
+	public StateHistory(GameRules<S, A> rules) {
+		this(rules, DEFAULT_KEYFRAME_INTERVAL, DEFAULT_CACHE_SIZE);
+	}
+
+	/**
+	 * @param rules
+	 *            The rules used to rebuild states.
+	 * @param keyframeInterval
+	 *            The amount of states between keyframes, 1 keeps every state in full.
+	 * @param cacheSize
+	 *            The amount of rebuilt states that are cached.
+	 */
+	public StateHistory(GameRules<S, A> rules, int keyframeInterval, int cacheSize) {
+		if (keyframeInterval < 1)
+			throw new RuntimeException("Error: The keyframe interval should be at least 1, got " + keyframeInterval);
+
+		this.rules = rules;
+		this.keyframeInterval = keyframeInterval;
+		this.cachedStates = new Object[cacheSize];
+		this.cachedIndices = new int[cacheSize];
+		this.cachedUses = new long[cacheSize];
+		for (int i = 0; i < cacheSize; i++) {
+			cachedIndices[i] = -1;
+		}
+	}
+
+	/**
+	 * Adds the next state, the action that led to it and its snapshot (possibly null). The state should not be changed
+	 * afterwards, it is only kept if it is a keyframe or the last state.
+	 */
+	public void add(S state, A action, StateSnapshot snapshot) {
+		if (actions.size % keyframeInterval == 0)
+			keyframes.add(state);
+		actions.add(action);
+		snapshots.add(snapshot);
+		last = state;
+	}
+
+	/** Returns the amount of states in the history. */
+	public int size() {
+		return actions.size;
+	}
+
+	/** Returns the last state that was added, or null if the history is empty. */
+	public S getLast() {
+		return last;
+	}
+
+	/** Returns the action that led to the state at the given index, null for the initial state. */
+	public A getAction(int index) {
+		return actions.get(index);
+	}
+
+	/** Returns the snapshot of the state at the given index, null if it was added without one. */
+	public StateSnapshot getSnapshot(int index) {
+		return snapshots.get(index);
+	}
+
+	/**
+	 * Returns the state at the given index, rebuilding it from the keyframe before it if needed. The returned state
+	 * should not be changed.
+	 */
+	@SuppressWarnings("unchecked")
+	public S get(int index) {
+		if (index < 0 || index >= actions.size)
+			throw new RuntimeException("Error: No state at index " + index + ", the history contains " + actions.size + " states");
+
+		if (index == actions.size - 1)
+			return last;
+		if (index % keyframeInterval == 0)
+			return keyframes.get(index / keyframeInterval);
+
+		// Check if we have the state cached, or else the closest state before it to continue from
+		int start = (index / keyframeInterval) * keyframeInterval;
+		S from = keyframes.get(index / keyframeInterval);
+		for (int i = 0; i < cachedIndices.length; i++) {
+			int cachedIndex = cachedIndices[i];
+			if (cachedIndex == index) {
+				cachedUses[i] = ++clock;
+				return (S) cachedStates[i];
+			}
+			if (cachedIndex > start && cachedIndex < index) {
+				start = cachedIndex;
+				from = (S) cachedStates[i];
+			}
+		}
+
+		S state = (S) from.copy();
+		for (int i = start + 1; i <= index; i++) {
+			rules.handle(state, actions.get(i));
+		}
+
+		cache(index, state);
+		return state;
+	}
+
+	/** Returns the amount of states between keyframes. */
+	public int getKeyframeInterval() {
+		return keyframeInterval;
+	}
+
+	/** Removes all states. */
+	public void clear() {
+		keyframes.clear();
+		actions.clear();
+		snapshots.clear();
+		last = null;
+		for (int i = 0; i < cachedIndices.length; i++) {
+			cachedIndices[i] = -1;
+			cachedStates[i] = null;
+		}
+	}
+
+	/** Stores a rebuilt state in the cache, replacing the state that was used least recently. */
+	private void cache(int index, S state) {
+		if (cachedIndices.length == 0)
+			return;
+
+		int slot = 0;
+		for (int i = 0; i < cachedIndices.length; i++) {
+			if (cachedIndices[i] < 0) {
+				slot = i;
+				break;
+			}
+			if (cachedUses[i] < cachedUses[slot])
+				slot = i;
+		}
+
+		cachedIndices[slot] = index;
+		cachedStates[slot] = state;
+		cachedUses[slot] = ++clock;
+	}
+
+}
@@ -0,0 +1,98 @@
+package net.codepoke.ai.challenges.hunterkiller.ui;
+
+import net.codepoke.ai.Action;
+import net.codepoke.ai.State;
+
+/**
+ * Unbounded queue that hands states over from a single producing thread (such as the thread parsing a match stream) to
+ * a single consuming thread (the rendering thread), without any locking. Adding never blocks or waits for the consumer,
+ * so a burst of states does not stall rendering.
+ *
+ * The queue is a linked list whose head is a sentinel owned by the consumer, and whose tail is owned by the producer.
+ * The only field both threads touch is the volatile link to the next node, which publishes everything the producer
+ * wrote into that node before linking it.
+ *
+ * @param <S>
+ *            The type of state.
+ * @param <A>
+ *            The type of action.
+ */
+public class StateQueue<S extends State, A extends Action> {
+
+	/** The node that was polled last, its successor is the next node to poll. Only used by the consumer. */
+	private Node<S, A> head;
+
+	/** The node that was added last. Only used by the producer. */
+	private Node<S, A> tail;
+
+	public StateQueue() {
+		head = tail = new Node<S, A>(null, null, null);
+	}
+
+	/**
+	 * Adds a state, the action that led to it and its snapshot (possibly null). May only be called by the producer.
+	 */
+	public void add(S state, A action, StateSnapshot snapshot) {
+		Node<S, A> node = new Node<S, A>(state, action, snapshot);
+		tail.next = node;
+		tail = node;
+	}
+
+	/**
+	 * Moves to the next state in the queue, which can then be read through {@link #getState()}, {@link #getAction()}
+	 * and {@link #getSnapshot()}. May only be called by the consumer.
+	 *
+	 * @return Whether there was a next state.
+	 */
+	public boolean poll() {
+		Node<S, A> next = head.next;
+		if (next == null)
+			return false;
+
+		// Release the contents of the previous node, it only remains as the sentinel
+		head.state = null;
+		head.action = null;
+		head.snapshot = null;
+		head = next;
+		return true;
+	}
+
+	/** Returns whether there are states waiting to be polled. May only be called by the consumer. */
+	public boolean isEmpty() {
+		return head.next == null;
+	}
+
+	/** Returns the state that was polled last. */
+	public S getState() {
+		return head.state;
+	}
+
+	/** Returns the action that led to the state that was polled last. */
+	public A getAction() {
+		return head.action;
+	}
+
+	/** Returns the snapshot of the state that was polled last. */
+	public StateSnapshot getSnapshot() {
+		return head.snapshot;
+	}
+
+	/** A state in the queue. */
+	private static class Node<S, A> {
+
+		S state;
+		A action;
+		StateSnapshot snapshot;
+
+		/** The next node, written by the producer and read by the consumer. */
+		volatile Node<S, A> next;
+
+		Node(S state, A action, StateSnapshot snapshot) {
+			this.state = state;
+			this.action = action;
+			this.snapshot = snapshot;
+		}
+
+	}
+
+}
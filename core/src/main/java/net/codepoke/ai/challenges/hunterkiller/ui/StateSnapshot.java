@@ -0,0 +1,16 @@
+package net.codepoke.ai.challenges.hunterkiller.ui;
+
+/**
+ * A compact copy of the part of a state that is needed to show it, created when the state is added to a
+ * {@link MatchFrame}. The frame keeps a snapshot of every state, and hands them to its {@link MatchRenderer} instead
+ * of the states themselves.
+ */
+public interface StateSnapshot {
+
+	/** Returns the names of the players, indexed on player ID. */
+	String[] getPlayers();
+
+	/** Returns the scores of the players, indexed on player ID. */
+	int[] getScores();
+
+}
@@ -0,0 +1,171 @@
+package net.codepoke.ai.challenges.hunterkiller;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.List;
+import java.util.Random;
+
+import javax.script.Invocable;
+import javax.script.ScriptEngine;
+import javax.script.ScriptEngineManager;
+import javax.script.ScriptException;
+
+import net.codepoke.ai.challenge.hunterkiller.HunterKillerAction;
+import net.codepoke.ai.challenge.hunterkiller.HunterKillerRules;
+import net.codepoke.ai.challenge.hunterkiller.HunterKillerState;
+import net.codepoke.ai.challenge.hunterkiller.HunterKillerStateFactory;
+import net.codepoke.ai.challenge.hunterkiller.MoveGenerator;
+import net.codepoke.ai.challenge.hunterkiller.Player;
+import net.codepoke.ai.challenge.hunterkiller.gameobjects.mapfeature.Structure;
+import net.codepoke.ai.challenge.hunterkiller.gameobjects.unit.Unit;
+import net.codepoke.ai.challenge.hunterkiller.orders.StructureOrder;
+import net.codepoke.ai.challenge.hunterkiller.orders.UnitOrder;
+
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.Json;
+
+/**
+ * Checks that messages survive a round trip through the compact encoding, both when they are encoded by
+ * {@link CompactMatchCodec} and when they are transcoded from JSON by the stream worker of the html project. Messages
+ * are compared through their JSON.
+ */
+public class CompactMatchCodecTest {
+
+	/** The stream worker, relative to the core project. */
+	private static final File STREAM_WORKER = new File("../html/webapp/stream-worker.js");
+
+	/** Stand-ins for the parts of a browser the stream worker uses, which are missing from Nashorn. */
+	private static final String WORKER_SHIMS = "var self = {};\n"
+												+ "var console = { error : function(message) {} };\n"
+												+ "var Map = function() { this.entries = {}; this.size = 0; };\n"
+												+ "Map.prototype.get = function(key) {\n"
+												+ "	return Object.prototype.hasOwnProperty.call(this.entries, key) ? this.entries[key] : undefined;\n"
+												+ "};\n"
+												+ "Map.prototype.set = function(key, value) {\n"
+												+ "	if (!Object.prototype.hasOwnProperty.call(this.entries, key))\n"
+												+ "		this.size++;\n"
+												+ "	this.entries[key] = value;\n"
+												+ "};\n"
+												+ "Number.isSafeInteger = function(value) {\n"
+												+ "	return Math.floor(value) === value && Math.abs(value) <= 9007199254740991;\n"
+												+ "};\n"
+												+ "Math.fround = function(value) { return new Float32Array([ value ])[0]; };\n"
+												+ "var TextEncoder = function() {};\n"
+												+ "TextEncoder.prototype.encode = function(string) {\n"
+												+ "	var bytes = new java.lang.String(string).getBytes('UTF-8');\n"
+												+ "	var encoded = new Uint8Array(bytes.length);\n"
+												+ "	for (var i = 0; i < bytes.length; i++)\n"
+												+ "		encoded[i] = bytes[i] & 0xFF;\n"
+												+ "	return encoded;\n"
+												+ "};\n"
+												+ "function transcodeToBytes(text) {\n"
+												+ "	var view = new Uint8Array(transcode(text));\n"
+												+ "	var bytes = new (Java.type('byte[]'))(view.length);\n"
+												+ "	for (var i = 0; i < view.length; i++)\n"
+												+ "		bytes[i] = (view[i] << 24) >> 24;\n"
+												+ "	return bytes;\n"
+												+ "}\n";
+
+	/** The amount of actions played to fill a batch. */
+	private static final int ACTIONS = 100;
+
+	private final Json json = new Json();
+	private final CompactMatchCodec codec = new CompactMatchCodec();
+
+	private HunterKillerState initialState;
+	private Array<HunterKillerAction> actions;
+
+	@Before
+	public void playMatch() {
+		initialState = new HunterKillerStateFactory().generateInitialState(new String[] { "A", "B", "C", "D" }, null);
+		actions = new Array<HunterKillerAction>();
+
+		// Play with random legal orders, so the batch contains every kind of order
+		Random random = new Random(42);
+		HunterKillerRules rules = new HunterKillerRules();
+		HunterKillerState state = initialState.copy();
+		for (int i = 0; i < ACTIONS; i++) {
+			HunterKillerAction action = new HunterKillerAction(state);
+			Player player = state.getPlayer(state.getCurrentPlayer());
+			for (Structure structure : player.getStructures(state.getMap())) {
+				List<StructureOrder> orders = MoveGenerator.getAllLegalOrders(state, structure);
+				if (!orders.isEmpty())
+					action.addOrder(orders.get(random.nextInt(orders.size())));
+			}
+			for (Unit unit : player.getUnits(state.getMap())) {
+				List<UnitOrder> orders = MoveGenerator.getAllLegalOrders(state, unit, true, true, true);
+				if (!orders.isEmpty())
+					action.addOrder(orders.get(random.nextInt(orders.size())));
+			}
+
+			actions.add(action);
+			rules.handle(state, action);
+		}
+	}
+
+	@Test
+	public void actionsRoundTrip() {
+		byte[] message = codec.encodeActions(actions);
+
+		assertEquals(CompactMatchCodec.KIND_ACTIONS, CompactMatchCodec.getKind(message));
+		assertEquals(ACTIONS, CompactMatchCodec.getActionCount(message));
+		assertEquals(json.toJson(actions), json.toJson(codec.decodeActions(message)));
+	}
+
+	@Test
+	public void stateRoundTrip() {
+		byte[] message = codec.encodeObject(initialState);
+
+		assertEquals(CompactMatchCodec.KIND_MESSAGE, CompactMatchCodec.getKind(message));
+		assertEquals(json.toJson(initialState), json.toJson(codec.decodeObject(HunterKillerState.class, message)));
+	}
+
+	@Test
+	public void compactIsSmallerThanJson() {
+		assertTrue(codec.encodeActions(actions).length < json.toJson(actions).length());
+	}
+
+	@Test
+	public void workerActionsRoundTrip() throws Exception {
+		byte[] message = transcode(json.toJson(actions));
+
+		assertEquals(CompactMatchCodec.KIND_ACTIONS, CompactMatchCodec.getKind(message));
+		assertEquals(ACTIONS, CompactMatchCodec.getActionCount(message));
+		assertEquals(json.toJson(actions), json.toJson(codec.decodeActions(message)));
+	}
+
+	@Test
+	public void workerStateRoundTrip() throws Exception {
+		// The initial state is sent as an array holding it, its class is written along with it
+		byte[] message = transcode(json.toJson(Array.with(initialState)));
+
+		assertEquals(CompactMatchCodec.KIND_MESSAGE, CompactMatchCodec.getKind(message));
+		Array<?> decoded = (Array<?>) codec.decodeObject(Object.class, message);
+		assertEquals(1, decoded.size);
+		assertEquals(json.toJson(initialState), json.toJson(decoded.first()));
+	}
+
+	/** Transcodes JSON with the stream worker, skips the test if there is no JavaScript engine to run it. */
+	private byte[] transcode(String text) throws IOException, ScriptException, NoSuchMethodException {
+		ScriptEngine engine = new ScriptEngineManager().getEngineByName("nashorn");
+		Assume.assumeNotNull(engine);
+
+		engine.eval(WORKER_SHIMS);
+		FileReader worker = new FileReader(STREAM_WORKER);
+		try {
+			engine.eval(worker);
+		} finally {
+			worker.close();
+		}
+		return (byte[]) ((Invocable) engine).invokeFunction("transcodeToBytes", text);
+	}
+
+}
@@ -0,0 +1,34 @@
+package net.codepoke.ai.challenges.hunterkiller.desktop;
+
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Creates the named daemon threads of a stage of work, such as the encoders of an exporter, so they don't keep the
+ * application alive once it exits. The threads are numbered in the order they are created.
+ *
+ * @author Anton Valkenberg (anton.valkenberg@gmail.com)
+ *
+ */
+class DaemonThreadFactory
+		implements ThreadFactory {
+
+	private final String name;
+	private final AtomicInteger count = new AtomicInteger();
+
+	/**
+	 * @param name
+	 *            The name of the stage, the threads are named after it followed by their number.
+	 */
+	public DaemonThreadFactory(String name) {
+		this.name = name;
+	}
+
+	@Override
+	public Thread newThread(Runnable runnable) {
+		Thread thread = new Thread(runnable, name + "-" + count.incrementAndGet());
+		thread.setDaemon(true);
+		return thread;
+	}
+
+}
@@ -1,9 +1,13 @@
 package net.codepoke.ai.challenges.hunterkiller.desktop;
 
+import java.io.File;
+import java.io.IOException;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.nio.charset.StandardCharsets;
+import java.text.SimpleDateFormat;
 import java.util.ArrayList;
+import java.util.Date;
 import java.util.List;
 
 import net.codepoke.ai.GameRules;
@@ -12,6 +16,7 @@ import net.codepoke.ai.challenge.hunterkiller.HunterKillerAction;
 import net.codepoke.ai.challenge.hunterkiller.HunterKillerRules;
 import net.codepoke.ai.challenge.hunterkiller.HunterKillerState;
 import net.codepoke.ai.challenge.hunterkiller.HunterKillerStateFactory;
+import net.codepoke.ai.challenges.hunterkiller.CompactMatchCodec;
 import net.codepoke.ai.challenges.hunterkiller.HunterKillerVisualization;
 import net.codepoke.ai.network.MatchMessageParser;
 import net.codepoke.ai.network.MatchStream;
@@ -29,6 +34,21 @@ import com.badlogic.gdx.utils.Json;
 
 public class DesktopLauncher {
 
+	/**
+	 * The amount of actions sent per message when simulating a stream. Sending the match in batches lets the
+	 * visualizer show the first rounds while the rest of the match is still being played and parsed.
+	 */
+	private static final int ACTIONS_PER_MESSAGE = 200;
+
+	/** Whether the simulated stream sends its messages in the compact encoding instead of JSON. */
+	private static final boolean COMPACT_STREAM = true;
+
+	/** Whether the simulated stream is recorded to a replay file in the {@link #REPLAY_DIRECTORY}. */
+	private static final boolean RECORD_SIMULATED_STREAM = false;
+
+	/** The directory in which received matches are recorded. */
+	private static final File REPLAY_DIRECTORY = new File("replays");
+
 	public static void main(String[] arg) throws URISyntaxException {
 
 		// Create the packed asset atlas
@@ -51,13 +71,52 @@ public class DesktopLauncher {
 
 		new LwjglApplication(listener, config);
 
+		// A replay file given on the command line is played instead of a stream
+		if (arg.length > 0 && arg[0].endsWith(ReplayFile.EXTENSION)) {
+			playReplay(listener, new File(arg[0]));
+			return;
+		}
+
 		// testStream(listener, "ai.codepoke.net/competition/stream_match", "HunterKiller",
 		// "HunterKiller-ombgo2vplhttkovn10kctb8i87-0");
 		simulateStream(listener);
 	}
 
+	/**
+	 * Plays a recorded match from a {@link ReplayFile}.
+	 */
+	private static void playReplay(final HunterKillerVisualization vis, final File path) {
+		new Thread() {
+
+			public void run() {
+				try {
+					ReplayFile replay = new ReplayFile(path);
+					try {
+						replay.play(vis);
+					} finally {
+						replay.close();
+					}
+				} catch (IOException e) {
+					e.printStackTrace();
+				}
+			}
+		}.start();
+	}
+
+	/** Returns a new file in the {@link #REPLAY_DIRECTORY} for a match. */
+	private static File createReplayFile(String name) {
+		String time = new SimpleDateFormat("yyyyMMdd-HHmmss").format(new Date());
+		return new File(REPLAY_DIRECTORY, name + "-" + time + ReplayFile.EXTENSION);
+	}
+
+	/**
+	 * Streams a match from a server. The messages are taken in by an {@link IngestionPipeline}, like those of a
+	 * simulated stream, and the match is recorded to a replay file.
+	 */
 	private static void testStream(final HunterKillerVisualization listener, final String server, final String gameName,
 			final String matchID) {
+		final IngestionPipeline pipeline = new IngestionPipeline(listener);
+
 		new Thread() {
 
 			public void run() {
@@ -74,8 +133,37 @@ public class DesktopLauncher {
 					params.add(new BasicNameValuePair(MatchMessageParser.MATCH_NAME_PARAMETER, matchID));
 					String encodedParams = URLEncodedUtils.format(params, StandardCharsets.UTF_8);
 
+					// Record the match while it is streamed. The recording is closed when the stream ends, after which the
+					// recorder ignores any states, or when the application exits before that.
+					final ReplayRecorder recorder = new ReplayRecorder(createReplayFile(matchID));
+					pipeline.addStateListener(recorder);
+					Runtime.getRuntime()
+							.addShutdownHook(new Thread() {
+
+								public void run() {
+									closeRecording(recorder);
+								}
+							});
+
 					String format = String.format("ws://%s?%s", server, encodedParams);
-					MatchStream stream = new MatchStream(listener.getParser(), new URI(format));
+					// The stream hands its messages to the pipeline instead of parsing them on its own thread
+					MatchStream stream = new MatchStream(pipeline.createForwardingParser(), new URI(format)) {
+
+						@Override
+						public void onClose(int code, String reason, boolean remote) {
+							super.onClose(code, reason, remote);
+							pipeline.submitTask(new Runnable() {
+
+								@Override
+								public void run() {
+									closeRecording(recorder);
+								}
+
+							});
+							pipeline.shutdown();
+						}
+
+					};
 					boolean correct = stream.connectBlocking();
 
 					if (!correct) {
@@ -86,6 +174,8 @@ public class DesktopLauncher {
 					e.printStackTrace();
 				} catch (URISyntaxException e) {
 					e.printStackTrace();
+				} catch (IOException e) {
+					e.printStackTrace();
 				}
 			}
 		}.start();
@@ -93,12 +183,27 @@ public class DesktopLauncher {
 
 	/**
 	 * Tests streaming a match to the visualizer by locally playing a game, and sending it to the
-	 * visualizer.
+	 * visualizer. The messages are taken in by an {@link IngestionPipeline}, so decoding, applying and building the
+	 * states happens on other threads than the one playing the match. The match is recorded to a replay file if
+	 * {@link #RECORD_SIMULATED_STREAM} is set.
 	 * 
 	 * @param listener
 	 */
 	private static void simulateStream(final HunterKillerVisualization vis) {
-		final MatchMessageParser<HunterKillerState, HunterKillerAction> listener = vis.getParser();
+		final IngestionPipeline pipeline = new IngestionPipeline(vis);
+
+		final ReplayRecorder recorder;
+		if (RECORD_SIMULATED_STREAM) {
+			try {
+				recorder = new ReplayRecorder(createReplayFile("simulated"));
+			} catch (IOException e) {
+				throw new RuntimeException("Error: Could not create replay file", e);
+			}
+			pipeline.addStateListener(recorder);
+		} else {
+			recorder = null;
+		}
+
 		new Thread() {
 
 			public void run() {
@@ -121,9 +226,15 @@ public class DesktopLauncher {
 				SlightlyRandomBot randomBot = new SlightlyRandomBot(); // Instantiate your bot here
 
 				Json json = new Json();
+				CompactMatchCodec codec = new CompactMatchCodec();
 
-				listener.parseMessage(vis.getLastState(), json.toJson(state.getPlayers())); // Players
-				listener.parseMessage(vis.getLastState(), json.toJson(Array.with(orgState))); // Initial State
+				if (COMPACT_STREAM) {
+					pipeline.submitCompact(codec.encodeObject(state.getPlayers())); // Players
+					pipeline.submitCompact(codec.encodeObject(Array.with(orgState))); // Initial State
+				} else {
+					pipeline.submitMessage(json.toJson(state.getPlayers())); // Players
+					pipeline.submitMessage(json.toJson(Array.with(orgState))); // Initial State
+				}
 
 				// The following snippet will run a match with the given AI for all player seats until the match is
 				// finished or an error occurs.
@@ -134,15 +245,53 @@ public class DesktopLauncher {
 					HunterKillerAction action = randomBot.handle(state);
 
 					actions.add(action);
-					// Alternatively, send the action immediately: listener.parseMessage(vis.getLastState(),
-					// json.toJson(action));
+					// Alternatively, send the action immediately:
+					// pipeline.submitActions(json.toJson(Array.with(action)));
 					result = rules.handle(state, action);
+
+					// Send the actions in batches, so the visualizer can start showing the match
+					if (actions.size == ACTIONS_PER_MESSAGE) {
+						submitActions(pipeline, codec, json, actions);
+						actions.clear();
+					}
 				} while (!result.isFinished() && result.isAccepted());
 
-				listener.parseMessage(vis.getLastState(), json.toJson(actions));
+				if (actions.size > 0)
+					submitActions(pipeline, codec, json, actions);
+
+				// Close the recording once all states have been created
+				if (recorder != null) {
+					pipeline.submitTask(new Runnable() {
+
+						@Override
+						public void run() {
+							closeRecording(recorder);
+						}
+
+					});
+				}
+				pipeline.shutdown();
 
 			}
 		}.start();
 	}
 
+	/** Closes a recording, which has no effect if it was already closed. */
+	private static void closeRecording(ReplayRecorder recorder) {
+		try {
+			recorder.close();
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+	}
+
+	/** Submits a batch of actions to the pipeline, in the encoding used by the simulated stream. */
+	private static void submitActions(IngestionPipeline pipeline, CompactMatchCodec codec, Json json, Array<HunterKillerAction> actions) {
+		if (COMPACT_STREAM) {
+			pipeline.submitCompact(codec.encodeActions(actions));
+		} else {
+			pipeline.submitActions(json.toJson(actions));
+		}
+	}
+
 }
@@ -0,0 +1,226 @@
+package net.codepoke.ai.challenges.hunterkiller.desktop;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import net.codepoke.ai.GameRules;
+import net.codepoke.ai.challenge.hunterkiller.HunterKillerAction;
+import net.codepoke.ai.challenge.hunterkiller.HunterKillerRules;
+import net.codepoke.ai.challenge.hunterkiller.HunterKillerState;
+
+import com.badlogic.gdx.ApplicationAdapter;
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.backends.lwjgl.LwjglApplication;
+import com.badlogic.gdx.files.FileHandle;
+import com.badlogic.gdx.graphics.Pixmap;
+import com.badlogic.gdx.graphics.PixmapIO;
+
+/**
+ * Renders a {@link ReplayFile replay} off-screen into a sequence of PNG images, one for the start of every round (or of
+ * every Nth round), and one for the final state. Nothing is drawn to the screen, but a GL context still requires a
+ * window, so a single undecorated pixel is opened for the duration of the export.
+ *
+ * The rendering thread only draws and reads back the frames. Encoding the PNG and writing it happens on a pool of
+ * encoder threads, so the next frame is drawn while the previous ones are compressed. The frames are read into a fixed
+ * set of pixmaps, which limits how far the rendering can run ahead of the encoders.
+ *
+ * Usage: FrameSequenceExporter replay [output directory] [every Nth round] [scale]
+ *
+ * @author Anton Valkenberg (anton.valkenberg@gmail.com)
+ *
+ */
+public class FrameSequenceExporter
+		extends ApplicationAdapter {
+
+	/** The amount of pixmaps per encoder thread, so each encoder has a frame waiting while it encodes another. */
+	private static final int PIXMAPS_PER_ENCODER = 2;
+
+	/** Each encoder thread keeps its own PNG encoder, which reuses its buffers between frames. */
+	private static final ThreadLocal<PixmapIO.PNG> PNG = new ThreadLocal<PixmapIO.PNG>() {
+
+		@Override
+		protected PixmapIO.PNG initialValue() {
+			return new PixmapIO.PNG();
+		}
+
+	};
+
+	private final File replayPath, output;
+	private final int step;
+	private final float scale;
+
+	private ReplayFile replay;
+	private OffscreenRenderer renderer;
+	private final GameRules<HunterKillerState, HunterKillerAction> rules = new HunterKillerRules();
+
+	/** The state that is being exported, which the actions of the replay are applied to, its index and action. */
+	private HunterKillerState state;
+	private int index;
+	private HunterKillerAction action;
+
+	/** The round of the last exported frame. */
+	private int exportedRound = -1;
+
+	private ExecutorService encoders;
+
+	/** The pixmaps that are not being encoded, the rendering waits for one if all are in use. */
+	private BlockingQueue<Pixmap> freePixmaps;
+
+	/** Whether all frames have been handed to the encoders. */
+	private boolean finished = false;
+
+	/** The amount of frames that were written, and that could not be written. */
+	private final AtomicInteger written = new AtomicInteger(), failed = new AtomicInteger();
+
+	private long startTime;
+
+	public FrameSequenceExporter(File replay, File output, int step, float scale) {
+		this.replayPath = replay;
+		this.output = output;
+		this.step = Math.max(1, step);
+		this.scale = scale;
+	}
+
+	public static void main(String[] arg) {
+		if (!ReplayTools.checkArguments(arg, 1, "FrameSequenceExporter replay [output directory] [every Nth round] [scale]"))
+			return;
+
+		File replay = new File(arg[0]);
+		File output = new File(arg.length > 1 ? arg[1] : replay.getName()
+																.replace(ReplayFile.EXTENSION, ""));
+		int step = arg.length > 2 ? Integer.parseInt(arg[2]) : 1;
+		float scale = arg.length > 3 ? Float.parseFloat(arg[3]) : 1;
+
+		new LwjglApplication(new FrameSequenceExporter(replay, output, step, scale),
+								ReplayTools.createHeadlessConfiguration("Exporting " + replay.getName()));
+	}
+
+	@Override
+	public void create() {
+		replay = ReplayTools.openRequired(replayPath);
+		output.mkdirs();
+
+		renderer = new OffscreenRenderer(scale);
+
+		int threads = Math.max(1, Runtime.getRuntime()
+											.availableProcessors() - 1);
+		encoders = Executors.newFixedThreadPool(threads, new DaemonThreadFactory("png-encoder"));
+		int pixmaps = threads * PIXMAPS_PER_ENCODER;
+		freePixmaps = new ArrayBlockingQueue<Pixmap>(pixmaps);
+
+		state = replay.getState(0);
+		index = 0;
+		action = null;
+		renderer.setState(state, null);
+		for (int i = 0; i < pixmaps; i++) {
+			freePixmaps.add(renderer.newPixmap());
+		}
+
+		startTime = System.currentTimeMillis();
+	}
+
+	@Override
+	public void render() {
+		// Apply the actions until the next state that is exported, one frame is exported per call
+		boolean exported = false;
+		while (!exported && !finished) {
+			boolean last = index == replay.size() - 1;
+			if (shouldExport(last)) {
+				export(last ? "final.png" : String.format("round-%05d.png", state.getCurrentRound()));
+				exported = true;
+			}
+
+			if (last) {
+				finish();
+			} else {
+				index++;
+				action = replay.getAction(index);
+				rules.handle(state, action);
+			}
+		}
+	}
+
+	/** Returns whether the current state is exported, the first state of every Nth round and the final state. */
+	private boolean shouldExport(boolean last) {
+		int round = state.getCurrentRound();
+		if (last || (round != exportedRound && (exportedRound < 0 || round - exportedRound >= step))) {
+			exportedRound = round;
+			return true;
+		}
+		return false;
+	}
+
+	/** Draws the current state, and hands it to an encoder to be written to the given file. */
+	private void export(String name) {
+		final Pixmap pixmap;
+		try {
+			pixmap = freePixmaps.take();
+		} catch (InterruptedException e) {
+			Thread.currentThread()
+					.interrupt();
+			return;
+		}
+		renderer.setState(state, action);
+		renderer.render(pixmap);
+
+		final FileHandle file = new FileHandle(new File(output, name));
+		encoders.execute(new Runnable() {
+
+			@Override
+			public void run() {
+				try {
+					// GL reads the rows bottom-up, which the encoder flips by default
+					PNG.get()
+						.write(file, pixmap);
+					written.incrementAndGet();
+				} catch (IOException e) {
+					failed.incrementAndGet();
+					e.printStackTrace();
+				} finally {
+					freePixmaps.add(pixmap);
+				}
+			}
+
+		});
+	}
+
+	/** Waits for the encoders to write the remaining frames, and exits. */
+	private void finish() {
+		finished = true;
+		encoders.shutdown();
+		try {
+			encoders.awaitTermination(1, TimeUnit.HOURS);
+		} catch (InterruptedException e) {
+			Thread.currentThread()
+					.interrupt();
+		}
+
+		System.out.println("Exported " + written.get() + " frames to " + output + " in " + (System.currentTimeMillis() - startTime) + "ms"
+							+ (failed.get() > 0 ? ", " + failed.get() + " frames could not be written" : ""));
+		Gdx.app.exit();
+	}
+
+	@Override
+	public void dispose() {
+		if (freePixmaps != null) {
+			for (Pixmap pixmap : freePixmaps) {
+				pixmap.dispose();
+			}
+		}
+		if (renderer != null)
+			renderer.dispose();
+		try {
+			if (replay != null)
+				replay.close();
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+	}
+
+}
@@ -0,0 +1,406 @@
+package net.codepoke.ai.challenges.hunterkiller.desktop;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import net.codepoke.ai.GameRules;
+import net.codepoke.ai.challenge.hunterkiller.HunterKillerAction;
+import net.codepoke.ai.challenge.hunterkiller.HunterKillerRules;
+import net.codepoke.ai.challenge.hunterkiller.HunterKillerState;
+import net.codepoke.ai.challenges.hunterkiller.CompactMatchCodec;
+import net.codepoke.ai.challenges.hunterkiller.HunterKillerVisualization;
+import net.codepoke.ai.challenges.hunterkiller.RoundSnapshot;
+import net.codepoke.ai.network.MatchMessageParser;
+import net.codepoke.ai.network.MatchMessageParser.StateCreationListener;
+
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.Json;
+import com.badlogic.gdx.utils.JsonReader;
+import com.badlogic.gdx.utils.JsonValue;
+
+/**
+ * Takes in the messages of a match for a {@link HunterKillerVisualization} on three threads, which work on different
+ * messages at the same time:
+ * <ol>
+ * <li>Decoding: batches of actions are decoded from JSON, and messages from the {@link CompactMatchCodec compact
+ * encoding}.</li>
+ * <li>Rules: the actions are applied to the previous state to create the next state. Other JSON messages (such as the
+ * players and the initial state) are handled by a {@link MatchMessageParser} at this stage.</li>
+ * <li>Building: the {@link RoundSnapshot} the renderer draws a state from is created, holding the columns of the
+ * objects on the map and the scores of the players. The state and its snapshot are then added to the visualization,
+ * which hands them to the rendering thread.</li>
+ * </ol>
+ * Each stage handles its work in the order the messages were submitted. Every match gets its own pipeline, so taking in
+ * several matches at once spreads over the available cores.
+ *
+ * If a message can't be handled, every message after it would be applied to the wrong state, so the pipeline stops
+ * handling messages and shows the error in the visualization instead.
+ *
+ * @author Anton Valkenberg (anton.valkenberg@gmail.com)
+ *
+ */
+public class IngestionPipeline {
+
+	/** Counter used to give the threads of each pipeline a unique name. */
+	private static final AtomicInteger pipelines = new AtomicInteger();
+
+	/** The visualization the states are added to. */
+	private final HunterKillerVisualization vis;
+
+	/** The threads of the stages. */
+	private final ExecutorService decoder, applier, builder;
+
+	/** Decodes compact messages. Only used by the decoding stage. */
+	private final CompactMatchCodec codec = new CompactMatchCodec();
+
+	/** Decodes JSON messages. Only used by the decoding stage. */
+	private final Json json = new Json();
+	private final JsonReader jsonReader = new JsonReader();
+
+	/** The rules used to create the next state. Only used by the rules stage. */
+	private final GameRules<HunterKillerState, HunterKillerAction> rules = new HunterKillerRules();
+
+	/** Parser for the messages that are not batches of actions. Only used by the rules stage. */
+	private final MatchMessageParser<HunterKillerState, HunterKillerAction> parser;
+
+	/** The last state that was created. Only used by the rules stage. */
+	private HunterKillerState last;
+
+	/** The error that stopped the pipeline, null while it is running. */
+	private volatile RuntimeException failure;
+
+	/** Listeners that are told about every created state on the rules stage, such as a {@link ReplayRecorder}. */
+	private final Array<StateCreationListener<HunterKillerState, HunterKillerAction>> listeners = new Array<StateCreationListener<HunterKillerState, HunterKillerAction>>();
+
+	public IngestionPipeline(HunterKillerVisualization vis) {
+		this.vis = vis;
+
+		int id = pipelines.incrementAndGet();
+		decoder = Executors.newSingleThreadExecutor(new DaemonThreadFactory("ingest-" + id + "-decode"));
+		applier = Executors.newSingleThreadExecutor(new DaemonThreadFactory("ingest-" + id + "-rules"));
+		builder = Executors.newSingleThreadExecutor(new DaemonThreadFactory("ingest-" + id + "-build"));
+
+		// States created by the parser are called back on the rules stage, and continue to the building stage from there
+		parser = new MatchMessageParser<HunterKillerState, HunterKillerAction>(rules);
+		parser.addStateListeners(new StateCreationListener<HunterKillerState, HunterKillerAction>() {
+
+			@Override
+			public void onStateCreation(HunterKillerState state, HunterKillerAction action) {
+				created(state, action);
+			}
+
+		});
+	}
+
+	/**
+	 * Adds a listener that is called on the rules stage for every state that is created, in order. Should be added
+	 * before the first message is submitted.
+	 */
+	public void addStateListener(StateCreationListener<HunterKillerState, HunterKillerAction> listener) {
+		listeners.add(listener);
+	}
+
+	/**
+	 * Submits a message that is handled as a whole by the parser, such as the players or the initial state.
+	 */
+	public void submitMessage(final String message) {
+		// Keep the order with the batches of actions that are still being decoded
+		decoder.execute(new StageTask() {
+
+			@Override
+			protected void handle() {
+				applier.execute(new StageTask() {
+
+					@Override
+					protected void handle() {
+						parser.parseMessage(last, message);
+					}
+
+				});
+			}
+
+		});
+	}
+
+	/**
+	 * Submits a JSON message of any kind, such as the messages of a match stream. A batch of actions (a top-level array
+	 * of objects containing orders) is applied like {@link #submitActions(String)}, any other message is handled like
+	 * {@link #submitMessage(String)}.
+	 */
+	public void submitText(final String message) {
+		decoder.execute(new StageTask() {
+
+			@Override
+			protected void handle() {
+				JsonValue root = jsonReader.parse(message);
+				if (!isActions(root)) {
+					applier.execute(new StageTask() {
+
+						@Override
+						protected void handle() {
+							parser.parseMessage(last, message);
+						}
+
+					});
+					return;
+				}
+
+				final Array<HunterKillerAction> actions = decode(root);
+				applier.execute(new StageTask() {
+
+					@Override
+					protected void handle() {
+						apply(actions);
+					}
+
+				});
+			}
+
+		});
+	}
+
+	/**
+	 * Returns a parser that submits every message it is given to this pipeline with {@link #submitText(String)},
+	 * instead of parsing it on the calling thread. This lets a {@link net.codepoke.ai.network.MatchStream} feed the
+	 * pipeline. The state the parser is given is ignored, the pipeline continues from the last state it created.
+	 */
+	public MatchMessageParser<HunterKillerState, HunterKillerAction> createForwardingParser() {
+		return new MatchMessageParser<HunterKillerState, HunterKillerAction>(new HunterKillerRules()) {
+
+			@Override
+			public void parseMessage(HunterKillerState state, String message) {
+				submitText(message);
+			}
+
+		};
+	}
+
+	/**
+	 * Submits a message containing a JSON array of actions, which are applied in order to the last state.
+	 */
+	public void submitActions(final String message) {
+		decoder.execute(new StageTask() {
+
+			@Override
+			protected void handle() {
+				final Array<HunterKillerAction> actions = decode(jsonReader.parse(message));
+
+				applier.execute(new StageTask() {
+
+					@Override
+					protected void handle() {
+						apply(actions);
+					}
+
+				});
+			}
+
+		});
+	}
+
+	/**
+	 * Submits a message in the compact encoding, which is either a batch of actions or another message, such as the
+	 * players or the initial state.
+	 */
+	public void submitCompact(final byte[] message) {
+		decoder.execute(new StageTask() {
+
+			@Override
+			protected void handle() {
+				if (CompactMatchCodec.getKind(message) == CompactMatchCodec.KIND_ACTIONS) {
+					final Array<HunterKillerAction> actions = codec.decodeActions(message);
+					applier.execute(new StageTask() {
+
+						@Override
+						protected void handle() {
+							apply(actions);
+						}
+
+					});
+				} else {
+					final Object decoded = codec.decodeObject(Object.class, message);
+					applier.execute(new StageTask() {
+
+						@Override
+						protected void handle() {
+							receive(decoded);
+						}
+
+					});
+				}
+			}
+
+		});
+	}
+
+	/**
+	 * Submits a task that runs on the rules stage once the messages submitted before it have been handled, such as
+	 * closing a {@link ReplayRecorder}. The task also runs when the pipeline has stopped on an error, so it can be used
+	 * to clean up.
+	 */
+	public void submitTask(final Runnable task) {
+		decoder.execute(new Runnable() {
+
+			@Override
+			public void run() {
+				applier.execute(new Runnable() {
+
+					@Override
+					public void run() {
+						try {
+							task.run();
+						} catch (RuntimeException e) {
+							fail(e);
+						}
+					}
+
+				});
+			}
+
+		});
+	}
+
+	/** Returns the error that stopped the pipeline, or null if it is running. */
+	public RuntimeException getFailure() {
+		return failure;
+	}
+
+	/**
+	 * Stops the pipeline once the submitted messages have been handled.
+	 */
+	public void shutdown() {
+		decoder.execute(new Runnable() {
+
+			@Override
+			public void run() {
+				applier.execute(new Runnable() {
+
+					@Override
+					public void run() {
+						builder.shutdown();
+					}
+
+				});
+				applier.shutdown();
+			}
+
+		});
+		decoder.shutdown();
+	}
+
+	/** Decodes a JSON array of actions. Called on the decoding stage. */
+	@SuppressWarnings("unchecked")
+	private Array<HunterKillerAction> decode(JsonValue message) {
+		return json.readValue(Array.class, HunterKillerAction.class, message);
+	}
+
+	/** Returns whether a JSON message is a batch of actions, a top-level array of objects containing orders. */
+	private static boolean isActions(JsonValue root) {
+		return root.isArray() && root.child != null && root.child.isObject() && root.child.has("orders");
+	}
+
+	/** Applies actions to the last state, creating a new state for each. Called on the rules stage. */
+	private void apply(Array<HunterKillerAction> actions) {
+		if (last == null)
+			throw new RuntimeException("Error: Received actions before the initial state");
+
+		for (int i = 0; i < actions.size; i++) {
+			HunterKillerAction action = actions.get(i);
+			HunterKillerState state = last.copy();
+			rules.handle(state, action);
+			created(state, action);
+		}
+	}
+
+	/**
+	 * Handles a decoded message that is not a batch of actions. A message containing states, such as the initial state,
+	 * continues from those. Other messages, such as the players, are not needed since every state holds its players.
+	 * Called on the rules stage.
+	 */
+	private void receive(Object message) {
+		if (!(message instanceof Array))
+			return;
+
+		Array<?> items = (Array<?>) message;
+		for (int i = 0; i < items.size; i++) {
+			if (items.get(i) instanceof HunterKillerState)
+				created((HunterKillerState) items.get(i), null);
+		}
+	}
+
+	/** Called on the rules stage for every state that is created. */
+	private void created(HunterKillerState state, HunterKillerAction action) {
+		last = state;
+		for (int i = 0; i < listeners.size; i++) {
+			listeners.get(i)
+						.onStateCreation(state, action);
+		}
+		build(state, action);
+	}
+
+	/**
+	 * Hands a state to the building stage, which creates its snapshot and adds both to the visualization. The
+	 * snapshots are created in the order of the states, since each shares the map of the match with the one before it.
+	 */
+	private void build(final HunterKillerState state, final HunterKillerAction action) {
+		builder.execute(new StageTask() {
+
+			@Override
+			protected void handle() {
+				RoundSnapshot snapshot = vis.createSnapshot(state, action);
+				vis.addState(state, action, snapshot);
+			}
+
+		});
+	}
+
+	/**
+	 * Stops handling messages after an error, and shows it in the visualization. Only the first error is reported, the
+	 * ones after it are likely caused by it.
+	 */
+	private synchronized void fail(RuntimeException e) {
+		if (failure != null)
+			return;
+		failure = e;
+
+		System.err.println("Error: Stopped taking in the match: " + e.getMessage());
+		e.printStackTrace();
+
+		final String error = "Error: Could not take in the match (" + e.getMessage() + ")";
+		Gdx.app.postRunnable(new Runnable() {
+
+			@Override
+			public void run() {
+				vis.displayError(error);
+			}
+
+		});
+	}
+
+	/**
+	 * Work done on one of the stages. Once the pipeline has stopped the work is skipped, and an error stops the pipeline
+	 * instead of being lost in the thread of the stage.
+	 */
+	private abstract class StageTask
+			implements Runnable {
+
+		@Override
+		public final void run() {
+			if (failure != null)
+				return;
+
+			try {
+				handle();
+			} catch (RuntimeException e) {
+				fail(e);
+			}
+		}
+
+		/** Does the work of the task. */
+		protected abstract void handle();
+
+	}
+
+}
@@ -0,0 +1,126 @@
+package net.codepoke.ai.challenges.hunterkiller.desktop;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import net.codepoke.ai.challenges.hunterkiller.HunterKillerVisualization;
+
+import com.badlogic.gdx.backends.lwjgl.LwjglApplication;
+import com.badlogic.gdx.backends.lwjgl.LwjglApplicationConfiguration;
+
+/**
+ * Opens the matches in a directory of {@link ReplayFile replays}, such as a tournament archive. The directory is
+ * indexed in parallel by a {@link ReplayLibrary}, after which the matches are listed on the console:
+ * <ul>
+ * <li>A number opens the match with that number in the visualization, replacing the match that is shown.</li>
+ * <li>Any other text lists the matches of the players whose name contains it.</li>
+ * <li>An empty line lists all matches again.</li>
+ * </ul>
+ *
+ * Usage: LibraryLauncher [directory], which defaults to the directory the matches are recorded in.
+ *
+ * @author Anton Valkenberg (anton.valkenberg@gmail.com)
+ *
+ */
+public class LibraryLauncher {
+
+	/** The amount of matches listed at once. */
+	private static final int LISTED_MATCHES = 50;
+
+	public static void main(String[] arg) throws IOException {
+		File directory = new File(arg.length > 0 ? arg[0] : "replays");
+
+		long start = System.currentTimeMillis();
+		ReplayLibrary library = ReplayLibrary.index(directory);
+		System.out.println("Indexed " + library.getEntries()
+												.size() + " matches in " + (System.currentTimeMillis() - start) + "ms");
+		if (!library.getFailures()
+					.isEmpty())
+			System.err.println("Could not read " + library.getFailures()
+															.size() + " files, such as: " + library.getFailures()
+																									.get(0));
+
+		final HunterKillerVisualization vis = new HunterKillerVisualization();
+		LwjglApplicationConfiguration config = new LwjglApplicationConfiguration();
+		config.forceExit = true;
+		new LwjglApplication(vis, config);
+
+		// Matches are opened on a thread of their own, so the console stays responsive while a long match is added
+		ExecutorService opener = Executors.newSingleThreadExecutor();
+		Future<?> opening = null;
+
+		List<ReplayLibrary.Entry> listed = library.getEntries();
+		list(listed);
+
+		BufferedReader console = new BufferedReader(new InputStreamReader(System.in));
+		String line;
+		while ((line = console.readLine()) != null) {
+			line = line.trim();
+
+			if (line.isEmpty()) {
+				listed = library.getEntries();
+				list(listed);
+				continue;
+			}
+
+			int number;
+			try {
+				number = Integer.parseInt(line);
+			} catch (NumberFormatException e) {
+				listed = library.find(line);
+				list(listed);
+				continue;
+			}
+
+			if (number < 0 || number >= listed.size()) {
+				System.err.println("No match with number " + number);
+				continue;
+			}
+
+			// Stop adding the match that is being opened, if any
+			if (opening != null)
+				opening.cancel(true);
+
+			final File file = listed.get(number)
+									.getFile();
+			opening = opener.submit(new Runnable() {
+
+				@Override
+				public void run() {
+					try {
+						ReplayFile replay = new ReplayFile(file);
+						try {
+							vis.clear();
+							replay.play(vis);
+						} finally {
+							replay.close();
+						}
+					} catch (IOException e) {
+						e.printStackTrace();
+					}
+				}
+
+			});
+			System.out.println("Opened " + file);
+		}
+
+		opener.shutdownNow();
+	}
+
+	/** Prints the first matches of a list, with the numbers with which they are opened. */
+	private static void list(List<ReplayLibrary.Entry> entries) {
+		for (int i = 0; i < Math.min(entries.size(), LISTED_MATCHES); i++) {
+			System.out.println(i + ". " + entries.get(i));
+		}
+		if (entries.size() > LISTED_MATCHES)
+			System.out.println("... and " + (entries.size() - LISTED_MATCHES) + " more, type part of a player name to find a match");
+		System.out.print("> ");
+	}
+
+}
@@ -0,0 +1,263 @@
+package net.codepoke.ai.challenges.hunterkiller.desktop;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+
+/**
+ * Writes a video of JPEG frames into an AVI file (Motion JPEG), which plays without any codecs other than a JPEG
+ * decoder. The amount of frames is not known in advance, so the headers are written with placeholders and filled in
+ * when the file is closed, together with the index of the frames.
+ *
+ * Only a single RIFF list is written (no OpenDML extension), which limits the file to 1GB. That is plenty for the
+ * length and resolution of a match.
+ *
+ * @author Anton Valkenberg (anton.valkenberg@gmail.com)
+ *
+ */
+public class MjpegAviWriter {
+
+	/** The size of the AVI file beyond which players stop reading. */
+	private static final long MAX_SIZE = 1L << 30;
+
+	/** The flag in the index marking a frame as a key frame, which every JPEG frame is. */
+	private static final int AVIIF_KEYFRAME = 0x10;
+
+	/** The flag in the main header marking the file as having an index. */
+	private static final int AVIF_HASINDEX = 0x10;
+
+	private final File path;
+	private final RandomAccessFile file;
+	private final FileChannel channel;
+
+	private final int width, height, framesPerSecond;
+
+	/** The positions of the fields that are filled in on closing. */
+	private long riffSizePosition, totalFramesPosition, headerBufferSizePosition, lengthPosition, streamBufferSizePosition,
+			moviSizePosition, moviPosition;
+
+	/** The index entries of the frames: their offset from the movie list, and their size. */
+	private ByteBuffer index = newBuffer(16 * 1024);
+
+	private int frames = 0, largestFrame = 0;
+
+	/** Buffer for the headers of chunks. */
+	private final ByteBuffer chunkHeader = newBuffer(8);
+
+	/** Padding added after chunks of an odd size. */
+	private final ByteBuffer padding = newBuffer(1);
+
+	public MjpegAviWriter(File path, int width, int height, int framesPerSecond) throws IOException {
+		this.width = width;
+		this.height = height;
+		this.framesPerSecond = framesPerSecond;
+		this.path = path;
+
+		File directory = path.getAbsoluteFile()
+								.getParentFile();
+		if (directory != null)
+			directory.mkdirs();
+
+		file = new RandomAccessFile(path, "rw");
+		file.setLength(0);
+		channel = file.getChannel();
+		writeHeaders();
+	}
+
+	/** Adds a frame, encoded as JPEG. */
+	public void addFrame(byte[] jpeg) throws IOException {
+		if (channel.position() + 8 + jpeg.length + 16L * (frames + 1) > MAX_SIZE)
+			throw new IOException("Error: Video exceeds the maximum size of an AVI file");
+
+		long offset = channel.position() - moviPosition;
+		writeChunkHeader("00dc", jpeg.length);
+		channel.write(ByteBuffer.wrap(jpeg));
+		if (jpeg.length % 2 != 0)
+			write(padding);
+
+		if (index.remaining() < 16) {
+			ByteBuffer larger = newBuffer(index.capacity() * 2);
+			index.flip();
+			larger.put(index);
+			index = larger;
+		}
+		index.put(fourCC("00dc"));
+		index.putInt(AVIIF_KEYFRAME);
+		index.putInt((int) offset);
+		index.putInt(jpeg.length);
+
+		frames++;
+		largestFrame = Math.max(largestFrame, jpeg.length);
+	}
+
+	/** Returns the amount of frames written so far. */
+	public int getFrames() {
+		return frames;
+	}
+
+	/** Writes the index, fills in the headers and closes the file. */
+	public void close() throws IOException {
+		try {
+			long moviEnd = channel.position();
+
+			index.flip();
+			writeChunkHeader("idx1", index.remaining());
+			write(index);
+
+			long end = channel.position();
+			patch(riffSizePosition, (int) (end - 8));
+			patch(moviSizePosition, (int) (moviEnd - moviSizePosition - 4));
+			patch(totalFramesPosition, frames);
+			patch(lengthPosition, frames);
+			patch(headerBufferSizePosition, largestFrame + 8);
+			patch(streamBufferSizePosition, largestFrame + 8);
+		} finally {
+			file.close();
+		}
+	}
+
+	/**
+	 * Closes the file without finishing it and deletes it, for when the video can't be completed. A video without its
+	 * index and sizes would only play partly, if at all.
+	 */
+	public void discard() {
+		try {
+			file.close();
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+		if (!path.delete())
+			System.err.println("Could not delete incomplete video " + path);
+	}
+
+	/** Writes the RIFF header, the header list and the start of the movie list. */
+	private void writeHeaders() throws IOException {
+		ByteBuffer header = newBuffer(256);
+
+		header.put(fourCC("RIFF"));
+		riffSizePosition = header.position();
+		header.putInt(0);
+		header.put(fourCC("AVI "));
+
+		// The header list: the main header, and the list of a single stream
+		int hdrlStart = header.position();
+		header.put(fourCC("LIST"));
+		header.putInt(0);
+		header.put(fourCC("hdrl"));
+
+		header.put(fourCC("avih"));
+		header.putInt(56);
+		header.putInt(1000000 / framesPerSecond); // Microseconds per frame
+		header.putInt(0); // Maximum bytes per second
+		header.putInt(0); // Padding granularity
+		header.putInt(AVIF_HASINDEX);
+		totalFramesPosition = header.position();
+		header.putInt(0);
+		header.putInt(0); // Initial frames
+		header.putInt(1); // Streams
+		headerBufferSizePosition = header.position();
+		header.putInt(0);
+		header.putInt(width);
+		header.putInt(height);
+		for (int i = 0; i < 4; i++) {
+			header.putInt(0); // Reserved
+		}
+
+		int strlStart = header.position();
+		header.put(fourCC("LIST"));
+		header.putInt(0);
+		header.put(fourCC("strl"));
+
+		header.put(fourCC("strh"));
+		header.putInt(56);
+		header.put(fourCC("vids"));
+		header.put(fourCC("MJPG"));
+		header.putInt(0); // Flags
+		header.putShort((short) 0); // Priority
+		header.putShort((short) 0); // Language
+		header.putInt(0); // Initial frames
+		header.putInt(1); // Scale
+		header.putInt(framesPerSecond); // Rate, frames per second is rate / scale
+		header.putInt(0); // Start
+		lengthPosition = header.position();
+		header.putInt(0);
+		streamBufferSizePosition = header.position();
+		header.putInt(0);
+		header.putInt(-1); // Quality, default
+		header.putInt(0); // Sample size, varies per frame
+		header.putShort((short) 0); // Frame rectangle
+		header.putShort((short) 0);
+		header.putShort((short) width);
+		header.putShort((short) height);
+
+		// The format of the stream, a BITMAPINFOHEADER
+		header.put(fourCC("strf"));
+		header.putInt(40);
+		header.putInt(40);
+		header.putInt(width);
+		header.putInt(height);
+		header.putShort((short) 1); // Planes
+		header.putShort((short) 24); // Bits per pixel
+		header.put(fourCC("MJPG"));
+		header.putInt(width * height * 3);
+		header.putInt(0); // Pixels per meter
+		header.putInt(0);
+		header.putInt(0); // Colors used
+		header.putInt(0); // Important colors
+
+		header.putInt(strlStart + 4, header.position() - strlStart - 8);
+		header.putInt(hdrlStart + 4, header.position() - hdrlStart - 8);
+
+		// The movie list, which contains the frames
+		header.put(fourCC("LIST"));
+		moviSizePosition = header.position();
+		header.putInt(0);
+		moviPosition = header.position();
+		header.put(fourCC("movi"));
+
+		header.flip();
+		write(header);
+	}
+
+	private void writeChunkHeader(String fourCC, int size) throws IOException {
+		chunkHeader.clear();
+		chunkHeader.put(fourCC(fourCC));
+		chunkHeader.putInt(size);
+		chunkHeader.flip();
+		write(chunkHeader);
+	}
+
+	/** Overwrites the int at the given position, keeping the position of the channel. */
+	private void patch(long position, int value) throws IOException {
+		ByteBuffer buffer = newBuffer(4);
+		buffer.putInt(value);
+		buffer.flip();
+		while (buffer.hasRemaining()) {
+			channel.write(buffer, position + buffer.position());
+		}
+	}
+
+	private void write(ByteBuffer buffer) throws IOException {
+		buffer.rewind();
+		while (buffer.hasRemaining()) {
+			channel.write(buffer);
+		}
+	}
+
+	private static ByteBuffer newBuffer(int size) {
+		return ByteBuffer.allocate(size)
+							.order(ByteOrder.LITTLE_ENDIAN);
+	}
+
+	private static byte[] fourCC(String code) {
+		byte[] bytes = new byte[4];
+		for (int i = 0; i < 4; i++) {
+			bytes[i] = (byte) code.charAt(i);
+		}
+		return bytes;
+	}
+
+}
@@ -0,0 +1,192 @@
+package net.codepoke.ai.challenges.hunterkiller.desktop;
+
+import net.codepoke.ai.challenge.hunterkiller.HunterKillerAction;
+import net.codepoke.ai.challenge.hunterkiller.HunterKillerState;
+import net.codepoke.ai.challenges.hunterkiller.HunterKillerRenderer;
+import net.codepoke.ai.challenges.hunterkiller.HunterKillerVisualization;
+import net.codepoke.ai.challenges.hunterkiller.ui.MatchStatistics;
+
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.graphics.GL20;
+import com.badlogic.gdx.graphics.Pixmap;
+import com.badlogic.gdx.graphics.Pixmap.Format;
+import com.badlogic.gdx.graphics.g2d.SpriteBatch;
+import com.badlogic.gdx.graphics.g2d.TextureAtlas;
+import com.badlogic.gdx.graphics.glutils.FrameBuffer;
+import com.badlogic.gdx.scenes.scene2d.ui.Skin;
+import com.badlogic.gdx.scenes.scene2d.ui.Table;
+import com.badlogic.gdx.utils.Align;
+
+/**
+ * Draws states with a {@link HunterKillerRenderer} into an off-screen {@link FrameBuffer}, and reads the pixels back
+ * into a {@link Pixmap}, so matches can be turned into images without showing them.
+ *
+ * Needs a GL context, so it should be created and used on the rendering thread of an application, and disposed when it
+ * is no longer needed.
+ *
+ * @author Anton Valkenberg (anton.valkenberg@gmail.com)
+ *
+ */
+public class OffscreenRenderer {
+
+	private final Skin skin;
+	private final HunterKillerRenderer renderer;
+	private final SpriteBatch batch;
+
+	/** The frame buffer that is drawn into, recreated when the size of the rendering changes. */
+	private FrameBuffer frameBuffer;
+
+	/** The scoreboard drawn above the board, and the table laying out both, null until the scoreboard is first shown. */
+	private MatchStatistics statistics;
+	private Table root;
+
+	/** Whether the scoreboard is drawn above the board. */
+	private boolean showScoreboard = false;
+
+	/** The state that is rendered. */
+	private HunterKillerState state;
+
+	/**
+	 * @param scale
+	 *            The scale at which the map is drawn, 1 draws every tile at {@link HunterKillerRenderer#TILE_SIZE_ORIGINAL}.
+	 */
+	public OffscreenRenderer(float scale) {
+		skin = new Skin();
+		skin.addRegions(new TextureAtlas(Gdx.files.internal("game.atlas")));
+		skin.addRegions(new TextureAtlas(Gdx.files.internal("uiskin.atlas")));
+		skin.load(Gdx.files.internal("uiskin.json"));
+
+		// The renderer only needs its frame for the free camera, which is not used off-screen
+		renderer = new HunterKillerRenderer(null, skin);
+		renderer.setScale(scale);
+
+		batch = new SpriteBatch();
+	}
+
+	/**
+	 * Sets the state that is rendered, and the action that led to it (null for the initial state). The state is read
+	 * when rendering, so it can be changed in between.
+	 */
+	public void setState(HunterKillerState state, HunterKillerAction action) {
+		this.state = state;
+		renderer.setState(state, action);
+	}
+
+	/**
+	 * Clears what the renderer cached of the map of the current match, should be called before rendering the states of
+	 * another match.
+	 */
+	public void clearMatch() {
+		renderer.clearMapCache();
+	}
+
+	/**
+	 * Sets whether the {@link MatchStatistics scoreboard} of the frame is drawn above the board, showing the names and
+	 * scores of the players in the current state.
+	 *
+	 * @param matchName
+	 *            The name shown on the scoreboard.
+	 */
+	public void setScoreboard(boolean show, String matchName) {
+		showScoreboard = show;
+		if (!show) {
+			if (root != null)
+				root.clearChildren();
+			return;
+		}
+
+		if (root == null) {
+			statistics = new MatchStatistics(renderer, skin);
+			root = new Table();
+		}
+		statistics.setMatchName(matchName);
+
+		// Same layout as the scoreboard and board of the frame
+		if (!root.hasChildren()) {
+			root.add(statistics)
+				.expandX()
+				.fill()
+				.align(Align.top | Align.center);
+			root.row();
+			root.add(renderer);
+		}
+	}
+
+	/** Returns the width in pixels of the rendering of the current state. */
+	public int getWidth() {
+		return showScoreboard ? (int) layout().getWidth() : (int) renderer.getPrefWidth();
+	}
+
+	/** Returns the height in pixels of the rendering of the current state. */
+	public int getHeight() {
+		return showScoreboard ? (int) layout().getHeight() : (int) renderer.getPrefHeight();
+	}
+
+	/** Returns the skin the renderer draws with. */
+	public Skin getSkin() {
+		return skin;
+	}
+
+	/** Creates a pixmap that fits the rendering of the current state. */
+	public Pixmap newPixmap() {
+		return new Pixmap(getWidth(), getHeight(), Format.RGBA8888);
+	}
+
+	/**
+	 * Renders the current state and reads the result into a pixmap, which should have the size of the rendering (see
+	 * {@link #newPixmap()}). The rows are read bottom-up, as GL stores them.
+	 */
+	public void render(Pixmap pixmap) {
+		int width = getWidth(), height = getHeight();
+		if (pixmap.getWidth() != width || pixmap.getHeight() != height)
+			throw new RuntimeException("Error: Pixmap of " + pixmap.getWidth() + "x" + pixmap.getHeight() + " does not fit rendering of " + width
+										+ "x" + height);
+
+		if (frameBuffer == null || frameBuffer.getWidth() != width || frameBuffer.getHeight() != height) {
+			if (frameBuffer != null)
+				frameBuffer.dispose();
+			frameBuffer = new FrameBuffer(Format.RGBA8888, width, height, false);
+			renderer.setTarget(frameBuffer);
+		}
+
+		batch.getProjectionMatrix()
+				.setToOrtho2D(0, 0, width, height);
+
+		frameBuffer.begin();
+		Gdx.gl.glClearColor(0, 0, 0, 1);
+		Gdx.gl.glClear(GL20.GL_COLOR_BUFFER_BIT);
+
+		batch.begin();
+		if (showScoreboard) {
+			layout().draw(batch, 1);
+		} else {
+			renderer.setPosition(0, 0);
+			renderer.draw(batch, 1);
+		}
+		batch.end();
+
+		Gdx.gl.glPixelStorei(GL20.GL_PACK_ALIGNMENT, 1);
+		Gdx.gl.glReadPixels(0, 0, width, height, GL20.GL_RGBA, GL20.GL_UNSIGNED_BYTE, pixmap.getPixels());
+		frameBuffer.end();
+	}
+
+	/** Lays out the scoreboard above the board for the current state, and returns the table containing both. */
+	private Table layout() {
+		statistics.setStateInfo(HunterKillerVisualization.getPlayerNames(state),
+				HunterKillerVisualization.getPlayerScores(state));
+
+		root.pack();
+		root.setPosition(0, 0);
+		return root;
+	}
+
+	/** Releases the frame buffer, the renderer and the skin. */
+	public void dispose() {
+		if (frameBuffer != null)
+			frameBuffer.dispose();
+		renderer.dispose();
+		batch.dispose();
+		skin.dispose();
+	}
+
+}
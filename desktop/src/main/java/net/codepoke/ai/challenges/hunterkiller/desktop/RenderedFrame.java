@@ -0,0 +1,59 @@
+package net.codepoke.ai.challenges.hunterkiller.desktop;
+
+import java.awt.image.BufferedImage;
+import java.nio.ByteBuffer;
+
+import com.badlogic.gdx.graphics.Pixmap;
+
+/**
+ * The pixels of a frame rendered by an {@link OffscreenRenderer}, copied out of its pixmap so the pixmap can be reused
+ * for the next frame while this one is encoded on another thread.
+ *
+ * @author Anton Valkenberg (anton.valkenberg@gmail.com)
+ *
+ */
+public class RenderedFrame {
+
+	/** The RGBA pixels, with the rows bottom-up as GL reads them. */
+	private final byte[] pixels;
+	private final int width, height;
+
+	private RenderedFrame(byte[] pixels, int width, int height) {
+		this.pixels = pixels;
+		this.width = width;
+		this.height = height;
+	}
+
+	/** Copies the pixels of a rendered pixmap. */
+	public static RenderedFrame read(Pixmap pixmap) {
+		ByteBuffer buffer = pixmap.getPixels();
+		byte[] pixels = new byte[pixmap.getWidth() * pixmap.getHeight() * 4];
+		int position = buffer.position();
+		buffer.get(pixels);
+		buffer.position(position);
+		return new RenderedFrame(pixels, pixmap.getWidth(), pixmap.getHeight());
+	}
+
+	public int getWidth() {
+		return width;
+	}
+
+	public int getHeight() {
+		return height;
+	}
+
+	/** Converts the frame into an opaque image with the rows top-down, ready to be encoded or drawn. */
+	public BufferedImage toImage() {
+		BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+		int[] row = new int[width];
+		for (int y = 0; y < height; y++) {
+			int offset = (height - 1 - y) * width * 4;
+			for (int x = 0; x < width; x++, offset += 4) {
+				row[x] = (pixels[offset] & 0xFF) << 16 | (pixels[offset + 1] & 0xFF) << 8 | (pixels[offset + 2] & 0xFF);
+			}
+			image.setRGB(0, y, width, 1, row, 0, width);
+		}
+		return image;
+	}
+
+}
@@ -0,0 +1,238 @@
+package net.codepoke.ai.challenges.hunterkiller.desktop;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+
+import net.codepoke.ai.challenge.hunterkiller.HunterKillerAction;
+import net.codepoke.ai.challenge.hunterkiller.HunterKillerRules;
+import net.codepoke.ai.challenge.hunterkiller.HunterKillerState;
+import net.codepoke.ai.challenges.hunterkiller.CompactMatchCodec;
+import net.codepoke.ai.challenges.hunterkiller.HunterKillerVisualization;
+
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.LongArray;
+
+/**
+ * A recorded match, opened through a memory-mapped file so any state can be read without parsing the rest of the file.
+ * See {@link ReplayRecorder} for how the file is written.
+ *
+ * The file consists of blocks of {@link #BLOCK_SIZE} states. Each block is a keyframe (the first state of the block in
+ * full) followed by the actions that led to each state of the block, both in the {@link CompactMatchCodec compact
+ * encoding}. An index of the blocks is written at the end, so opening a state only needs to decode its keyframe and
+ * apply at most {@link #BLOCK_SIZE} - 1 actions to it, regardless of the length of the match.
+ *
+ * A replay file is not thread-safe: it caches the block that was read last, so it should only be read from one thread
+ * at a time. Threads reading the same replay concurrently should each open their own.
+ *
+ * @author Anton Valkenberg (anton.valkenberg@gmail.com)
+ *
+ */
+public class ReplayFile {
+
+	/** The extension of replay files. */
+	public static final String EXTENSION = ".hkr";
+
+	/** The bytes the file starts and ends with. */
+	static final int MAGIC = 0x484B5231; // HKR1
+
+	/** The amount of states in each block. */
+	static final int BLOCK_SIZE = 64;
+
+	/** The types of records in the file. */
+	static final byte RECORD_KEYFRAME = 1, RECORD_ACTIONS = 2;
+
+	/** The size of the trailer: the offset of the index, the amount of states and the magic. */
+	static final int TRAILER_SIZE = 8 + 4 + 4;
+
+	/** The file, and its contents mapped into memory. */
+	private final RandomAccessFile file;
+	private final MappedByteBuffer buffer;
+
+	/** The amount of states in the replay. */
+	private int size;
+
+	/** The offsets of the keyframe and actions records of each block. */
+	private final LongArray keyframeOffsets = new LongArray(), actionOffsets = new LongArray();
+
+	private final CompactMatchCodec codec = new CompactMatchCodec();
+	private final HunterKillerRules rules = new HunterKillerRules();
+
+	/**
+	 * The block that was read last, its keyframe and actions, so reading a block in order only decodes it once. Only
+	 * used by the thread reading the file.
+	 */
+	private int cachedBlock = -1;
+	private HunterKillerState cachedKeyframe;
+	private Array<HunterKillerAction> cachedActions;
+
+	/**
+	 * Opens a replay file. If the recording was not closed properly (so the index is missing), the index is rebuilt by
+	 * going through the records, and any unfinished block is left out.
+	 */
+	public ReplayFile(File path) throws IOException {
+		file = new RandomAccessFile(path, "r");
+		FileChannel channel = file.getChannel();
+
+		// Offsets within the mapped buffer are ints, so larger files can't be read
+		if (channel.size() > Integer.MAX_VALUE) {
+			close();
+			throw new IOException("Error: Replay file is larger than " + Integer.MAX_VALUE + " bytes (" + path + ")");
+		}
+		buffer = channel.map(MapMode.READ_ONLY, 0, channel.size());
+
+		if (buffer.capacity() < 4 || buffer.getInt(0) != MAGIC) {
+			close();
+			throw new IOException("Error: Not a replay file (" + path + ")");
+		}
+
+		if (!readIndex())
+			rebuildIndex();
+	}
+
+	/** Returns the amount of states in the replay. */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Returns the state at the given index.
+	 */
+	public HunterKillerState getState(int index) {
+		int block = readBlock(index);
+		HunterKillerState state = cachedKeyframe.copy();
+		for (int i = block * BLOCK_SIZE + 1; i <= index; i++) {
+			rules.handle(state, cachedActions.get(i - block * BLOCK_SIZE));
+		}
+		return state;
+	}
+
+	/**
+	 * Returns the action that led to the state at the given index, null for the initial state.
+	 */
+	public HunterKillerAction getAction(int index) {
+		int block = readBlock(index);
+		return cachedActions.get(index - block * BLOCK_SIZE);
+	}
+
+	/**
+	 * Adds the states of the replay to a visualization, from the thread that calls this. The visualization only keeps
+	 * some of the states, so the keyframes are decoded once and the actions are applied in order. Stops early if the
+	 * thread is interrupted, such as when another replay is opened.
+	 */
+	public void play(HunterKillerVisualization vis) {
+		if (size == 0)
+			return;
+
+		vis.addState(getState(0), null);
+		for (int block = 0; block * BLOCK_SIZE < size; block++) {
+			if (Thread.currentThread()
+						.isInterrupted())
+				return;
+
+			readBlock(block * BLOCK_SIZE);
+			int start = block == 0 ? 1 : 0;
+			int end = Math.min(BLOCK_SIZE, size - block * BLOCK_SIZE);
+			vis.addActions(cachedActions, start, end);
+		}
+	}
+
+	/** Closes the file. */
+	public void close() throws IOException {
+		file.close();
+	}
+
+	/** Decodes the block containing the given state, if it is not the cached block, and returns its index. */
+	private int readBlock(int index) {
+		if (index < 0 || index >= size)
+			throw new RuntimeException("Error: No state at index " + index + ", the replay contains " + size + " states");
+
+		int block = index / BLOCK_SIZE;
+		if (block != cachedBlock) {
+			cachedKeyframe = codec.decodeObject(HunterKillerState.class, readRecord(keyframeOffsets.get(block), RECORD_KEYFRAME));
+			cachedActions = codec.decodeActions(readRecord(actionOffsets.get(block), RECORD_ACTIONS));
+			cachedBlock = block;
+		}
+		return block;
+	}
+
+	/** Reads the contents of the record at the given offset. */
+	private byte[] readRecord(long offset, byte type) {
+		if (offset < 0 || offset + 5 > buffer.capacity())
+			throw new RuntimeException("Error: Record offset " + offset + " lies outside of the replay file");
+
+		int position = (int) offset;
+		if (buffer.get(position) != type)
+			throw new RuntimeException("Error: Expected a record of type " + type + " at " + offset + " in replay file");
+
+		int length = buffer.getInt(position + 1);
+		byte[] contents = new byte[length];
+		ByteBuffer view = buffer.duplicate();
+		view.position(position + 5);
+		view.get(contents);
+		return contents;
+	}
+
+	/** Reads the index from the end of the file, returns false if there is none. */
+	private boolean readIndex() {
+		int capacity = buffer.capacity();
+		if (capacity < 4 + TRAILER_SIZE || buffer.getInt(capacity - 4) != MAGIC)
+			return false;
+
+		// An index that lies outside of the file is treated as missing, so it is rebuilt
+		long offset = buffer.getLong(capacity - TRAILER_SIZE);
+		if (offset < 4 || offset + 4 > capacity - TRAILER_SIZE)
+			return false;
+
+		int position = (int) offset;
+		size = buffer.getInt(capacity - TRAILER_SIZE + 8);
+		int blocks = buffer.getInt(position);
+		position += 4;
+		for (int i = 0; i < blocks; i++) {
+			keyframeOffsets.add(buffer.getLong(position));
+			actionOffsets.add(buffer.getLong(position + 8));
+			position += 16;
+		}
+		return true;
+	}
+
+	/** Rebuilds the index by going through the records, leaving out a block without actions. */
+	private void rebuildIndex() {
+		int capacity = buffer.capacity();
+		int position = 4;
+		long keyframe = -1;
+		size = 0;
+
+		while (position + 5 <= capacity) {
+			byte type = buffer.get(position);
+			int length = buffer.getInt(position + 1);
+			if (length < 0 || position + 5 + length > capacity)
+				break;
+
+			if (type == RECORD_KEYFRAME) {
+				keyframe = position;
+			} else if (type == RECORD_ACTIONS && keyframe >= 0) {
+				keyframeOffsets.add(keyframe);
+				actionOffsets.add(position);
+				keyframe = -1;
+			} else {
+				break;
+			}
+			position += 5 + length;
+		}
+
+		// Every block but the last one is full, the size of the last one is read from its actions
+		int blocks = keyframeOffsets.size;
+		if (blocks > 0) {
+			cachedBlock = -1;
+			size = (blocks - 1) * BLOCK_SIZE + 1;
+			readBlock(size - 1);
+			size += cachedActions.size - 1;
+		}
+	}
+
+}
@@ -0,0 +1,275 @@
+package net.codepoke.ai.challenges.hunterkiller.desktop;
+
+import java.io.File;
+import java.io.FileFilter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+import net.codepoke.ai.challenge.hunterkiller.HunterKillerState;
+import net.codepoke.ai.challenge.hunterkiller.Map;
+import net.codepoke.ai.challenges.hunterkiller.HunterKillerVisualization;
+
+/**
+ * An index of the {@link ReplayFile replays} in a directory (and its subdirectories), holding enough about every match
+ * to find it without opening it again: the players, their final scores, the amount of rounds and the size of the map.
+ *
+ * Indexing opens every replay and only decodes its last block, up to the final state, which holds everything the
+ * index needs. It is spread over the cores of a fork-join pool by splitting the list of files in halves until few
+ * enough remain.
+ *
+ * @author Anton Valkenberg (anton.valkenberg@gmail.com)
+ *
+ */
+public class ReplayLibrary {
+
+	/** The amount of files below which a task indexes its files itself instead of splitting them. */
+	private static final int FILES_PER_TASK = 16;
+
+	/** The indexed matches, sorted on their file. */
+	private final List<Entry> entries;
+
+	/** The files that could not be read, such as incomplete recordings without a single block. */
+	private final List<File> failures;
+
+	private ReplayLibrary(List<Entry> entries, List<File> failures) {
+		this.entries = entries;
+		this.failures = failures;
+	}
+
+	/**
+	 * Indexes the replays in a directory and its subdirectories, on the common fork-join pool.
+	 */
+	public static ReplayLibrary index(File directory) {
+		return index(directory, ForkJoinPool.commonPool());
+	}
+
+	/**
+	 * Indexes the replays in a directory and its subdirectories, on the given pool.
+	 */
+	public static ReplayLibrary index(File directory, ForkJoinPool pool) {
+		if (!directory.isDirectory())
+			throw new RuntimeException("Error: Not a directory (" + directory + ")");
+
+		List<File> files = findReplays(directory);
+
+		IndexResult result = pool.invoke(new IndexTask(files, 0, files.size()));
+
+		Collections.sort(result.entries, new Comparator<Entry>() {
+
+			@Override
+			public int compare(Entry a, Entry b) {
+				return a.getFile()
+						.compareTo(b.getFile());
+			}
+
+		});
+		return new ReplayLibrary(result.entries, result.failures);
+	}
+
+	/** Returns the indexed matches, sorted on their file. */
+	public List<Entry> getEntries() {
+		return Collections.unmodifiableList(entries);
+	}
+
+	/** Returns the files that could not be indexed. */
+	public List<File> getFailures() {
+		return Collections.unmodifiableList(failures);
+	}
+
+	/** Returns the matches in which a player with a name containing the given text (ignoring case) played. */
+	public List<Entry> find(String player) {
+		String lowerCase = player.toLowerCase();
+		List<Entry> found = new ArrayList<Entry>();
+		for (Entry entry : entries) {
+			for (String name : entry.getPlayers()) {
+				if (name.toLowerCase()
+						.contains(lowerCase)) {
+					found.add(entry);
+					break;
+				}
+			}
+		}
+		return found;
+	}
+
+	/** Returns the replay files in a directory and its subdirectories. */
+	static List<File> findReplays(File directory) {
+		List<File> files = new ArrayList<File>();
+		collect(directory, files);
+		return files;
+	}
+
+	/** Adds the replay files in a directory and its subdirectories to the list. */
+	private static void collect(File directory, List<File> files) {
+		File[] children = directory.listFiles(new FileFilter() {
+
+			@Override
+			public boolean accept(File file) {
+				return file.isDirectory() || file.getName()
+													.endsWith(ReplayFile.EXTENSION);
+			}
+
+		});
+		if (children == null)
+			return;
+
+		for (File child : children) {
+			if (child.isDirectory()) {
+				collect(child, files);
+			} else {
+				files.add(child);
+			}
+		}
+	}
+
+	/** Reads the entry of a single replay. */
+	private static Entry read(File file) throws IOException {
+		ReplayFile replay = ReplayTools.open(file);
+		try {
+			HunterKillerState last = replay.getState(replay.size() - 1);
+			Map map = last.getMap();
+			return new Entry(file, HunterKillerVisualization.getPlayerNames(last), HunterKillerVisualization.getPlayerScores(last),
+								last.getCurrentRound(), replay.size(), map.getMapWidth(), map.getMapHeight());
+		} finally {
+			replay.close();
+		}
+	}
+
+	/** Indexes a range of files, by splitting it in halves until it is small enough. */
+	private static class IndexTask
+			extends RecursiveTask<IndexResult> {
+
+		private static final long serialVersionUID = 1L;
+
+		private final List<File> files;
+		private final int start, end;
+
+		public IndexTask(List<File> files, int start, int end) {
+			this.files = files;
+			this.start = start;
+			this.end = end;
+		}
+
+		@Override
+		protected IndexResult compute() {
+			if (end - start > FILES_PER_TASK) {
+				int middle = (start + end) >>> 1;
+				IndexTask left = new IndexTask(files, start, middle);
+				left.fork();
+				IndexResult right = new IndexTask(files, middle, end).compute();
+				return left.join()
+							.merge(right);
+			}
+
+			IndexResult result = new IndexResult();
+			for (int i = start; i < end; i++) {
+				File file = files.get(i);
+				try {
+					result.entries.add(read(file));
+				} catch (IOException e) {
+					result.failures.add(file);
+				} catch (RuntimeException e) {
+					result.failures.add(file);
+				}
+			}
+			return result;
+		}
+
+	}
+
+	/** The entries and failures of a range of files. */
+	private static class IndexResult {
+
+		final List<Entry> entries = new ArrayList<Entry>();
+		final List<File> failures = new ArrayList<File>();
+
+		IndexResult merge(IndexResult other) {
+			entries.addAll(other.entries);
+			failures.addAll(other.failures);
+			return this;
+		}
+
+	}
+
+	/**
+	 * A match in the library.
+	 */
+	public static class Entry {
+
+		private final File file;
+		private final String[] players;
+		private final int[] scores;
+		private final int rounds, states;
+		private final int mapWidth, mapHeight;
+
+		public Entry(File file, String[] players, int[] scores, int rounds, int states, int mapWidth, int mapHeight) {
+			this.file = file;
+			this.players = players;
+			this.scores = scores;
+			this.rounds = rounds;
+			this.states = states;
+			this.mapWidth = mapWidth;
+			this.mapHeight = mapHeight;
+		}
+
+		/** Returns the replay file of the match. */
+		public File getFile() {
+			return file;
+		}
+
+		/** Returns the names of the players. */
+		public String[] getPlayers() {
+			return players;
+		}
+
+		/** Returns the scores of the players in the final state, in the same order as the names. */
+		public int[] getScores() {
+			return scores;
+		}
+
+		/** Returns the round of the final state. */
+		public int getRounds() {
+			return rounds;
+		}
+
+		/** Returns the amount of states in the replay. */
+		public int getStates() {
+			return states;
+		}
+
+		public int getMapWidth() {
+			return mapWidth;
+		}
+
+		public int getMapHeight() {
+			return mapHeight;
+		}
+
+		@Override
+		public String toString() {
+			StringBuilder builder = new StringBuilder();
+			builder.append(file.getName())
+					.append(" (")
+					.append(mapWidth)
+					.append('x')
+					.append(mapHeight)
+					.append(", ")
+					.append(rounds)
+					.append(" rounds)");
+			for (int i = 0; i < players.length; i++) {
+				builder.append(i == 0 ? ": " : ", ")
+						.append(players[i])
+						.append(' ')
+						.append(scores[i]);
+			}
+			return builder.toString();
+		}
+
+	}
+
+}
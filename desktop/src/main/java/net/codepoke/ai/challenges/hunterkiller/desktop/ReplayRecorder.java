@@ -0,0 +1,134 @@
+package net.codepoke.ai.challenges.hunterkiller.desktop;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+import net.codepoke.ai.challenge.hunterkiller.HunterKillerAction;
+import net.codepoke.ai.challenge.hunterkiller.HunterKillerState;
+import net.codepoke.ai.challenges.hunterkiller.CompactMatchCodec;
+import net.codepoke.ai.network.MatchMessageParser.StateCreationListener;
+
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.LongArray;
+
+/**
+ * Records the states of a match into a {@link ReplayFile}, as they are created. Each state is only written as the
+ * action that led to it, except for the first state of every block, which is written in full as a keyframe. The index
+ * is written when the recording is closed.
+ *
+ * The states should be created on a single thread, such as the rules stage of an {@link IngestionPipeline}. The
+ * recording can be closed from another thread, such as a shutdown hook, after which any further states are ignored.
+ *
+ * @author Anton Valkenberg (anton.valkenberg@gmail.com)
+ *
+ */
+public class ReplayRecorder
+		implements StateCreationListener<HunterKillerState, HunterKillerAction> {
+
+	private final DataOutputStream out;
+
+	/** The amount of bytes written so far. */
+	private long written = 0;
+
+	/** The amount of states recorded so far. */
+	private int size = 0;
+
+	/** The actions of the block that is being recorded. */
+	private final Array<HunterKillerAction> actions = new Array<HunterKillerAction>();
+
+	/** The offsets of the keyframe and actions records of each block. */
+	private final LongArray keyframeOffsets = new LongArray(), actionOffsets = new LongArray();
+
+	private final CompactMatchCodec codec = new CompactMatchCodec();
+
+	private boolean closed = false;
+
+	public ReplayRecorder(File path) throws IOException {
+		File directory = path.getAbsoluteFile()
+								.getParentFile();
+		if (directory != null)
+			directory.mkdirs();
+
+		out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(path)));
+		writeInt(ReplayFile.MAGIC);
+	}
+
+	@Override
+	public synchronized void onStateCreation(HunterKillerState state, HunterKillerAction action) {
+		if (closed)
+			return;
+
+		try {
+			if (size % ReplayFile.BLOCK_SIZE == 0) {
+				flushActions();
+				keyframeOffsets.add(written);
+				writeRecord(ReplayFile.RECORD_KEYFRAME, codec.encodeObject(state));
+			}
+			actions.add(action);
+			size++;
+		} catch (IOException e) {
+			throw new RuntimeException("Error: Could not record state " + size, e);
+		}
+	}
+
+	/** Writes the remaining actions and the index, and closes the file. */
+	public synchronized void close() throws IOException {
+		if (closed)
+			return;
+		closed = true;
+
+		flushActions();
+
+		long indexOffset = written;
+		writeInt(keyframeOffsets.size);
+		for (int i = 0; i < keyframeOffsets.size; i++) {
+			writeLong(keyframeOffsets.get(i));
+			writeLong(actionOffsets.get(i));
+		}
+
+		// Trailer
+		writeLong(indexOffset);
+		writeInt(size);
+		writeInt(ReplayFile.MAGIC);
+		out.close();
+	}
+
+	/** Returns the amount of states recorded so far. */
+	public int size() {
+		return size;
+	}
+
+	/** Writes the actions of the block that is being recorded, if any. */
+	private void flushActions() throws IOException {
+		if (actions.size == 0)
+			return;
+
+		actionOffsets.add(written);
+		writeRecord(ReplayFile.RECORD_ACTIONS, codec.encodeActions(actions));
+		actions.clear();
+
+		// A finished block can be recovered even if the recording is not closed properly
+		out.flush();
+	}
+
+	private void writeRecord(byte type, byte[] contents) throws IOException {
+		out.writeByte(type);
+		writeInt(contents.length);
+		out.write(contents);
+		written += 1 + contents.length;
+	}
+
+	private void writeInt(int value) throws IOException {
+		out.writeInt(value);
+		written += 4;
+	}
+
+	private void writeLong(long value) throws IOException {
+		out.writeLong(value);
+		written += 8;
+	}
+
+}
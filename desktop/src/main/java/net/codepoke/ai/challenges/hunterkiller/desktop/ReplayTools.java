@@ -0,0 +1,80 @@
+package net.codepoke.ai.challenges.hunterkiller.desktop;
+
+import java.io.File;
+import java.io.IOException;
+
+import com.badlogic.gdx.backends.lwjgl.LwjglApplicationConfiguration;
+
+/**
+ * What the command line tools working on {@link ReplayFile replays} have in common, such as the
+ * {@link FrameSequenceExporter}, {@link VideoExporter} and {@link ThumbnailGenerator}.
+ *
+ * @author Anton Valkenberg (anton.valkenberg@gmail.com)
+ *
+ */
+class ReplayTools {
+
+	private ReplayTools() {
+	}
+
+	/**
+	 * Checks whether a tool was given its required arguments, and prints its usage if not.
+	 *
+	 * @param usage
+	 *            The name of the tool followed by its arguments, optional ones between brackets.
+	 * @return Whether the tool can continue.
+	 */
+	static boolean checkArguments(String[] arg, int required, String usage) {
+		if (arg.length >= required)
+			return true;
+
+		System.err.println("Usage: " + usage);
+		return false;
+	}
+
+	/**
+	 * Opens a replay that contains at least one state, such as the initial state.
+	 *
+	 * @throws IOException
+	 *             If the replay could not be read, or contains no states.
+	 */
+	static ReplayFile open(File path) throws IOException {
+		ReplayFile replay = new ReplayFile(path);
+		if (replay.size() == 0) {
+			replay.close();
+			throw new IOException("Error: Replay contains no states (" + path + ")");
+		}
+		return replay;
+	}
+
+	/**
+	 * Opens a replay that contains at least one state, for a tool that can't continue without it.
+	 */
+	static ReplayFile openRequired(File path) {
+		try {
+			return open(path);
+		} catch (IOException e) {
+			throw new RuntimeException("Error: Could not open replay " + path, e);
+		}
+	}
+
+	/**
+	 * Creates the configuration of an application that only renders off-screen: a single undecorated pixel, which renders
+	 * as fast as it can, also when it is not in the foreground.
+	 */
+	static LwjglApplicationConfiguration createHeadlessConfiguration(String title) {
+		System.setProperty("org.lwjgl.opengl.Window.undecorated", "true");
+
+		LwjglApplicationConfiguration config = new LwjglApplicationConfiguration();
+		config.title = title;
+		config.width = 1;
+		config.height = 1;
+		config.resizable = false;
+		config.vSyncEnabled = false;
+		config.foregroundFPS = 0;
+		config.backgroundFPS = 0;
+		config.forceExit = true;
+		return config;
+	}
+
+}
@@ -0,0 +1,338 @@
+package net.codepoke.ai.challenges.hunterkiller.desktop;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.imageio.ImageIO;
+
+import net.codepoke.ai.GameRules;
+import net.codepoke.ai.challenge.hunterkiller.HunterKillerAction;
+import net.codepoke.ai.challenge.hunterkiller.HunterKillerRules;
+import net.codepoke.ai.challenge.hunterkiller.HunterKillerState;
+
+import com.badlogic.gdx.ApplicationAdapter;
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.backends.lwjgl.LwjglApplication;
+import com.badlogic.gdx.graphics.Pixmap;
+
+/**
+ * Generates previews for every {@link ReplayFile replay} in a directory (and its subdirectories): a thumbnail of the
+ * final round with the scoreboard above it, and optionally a contact sheet of every Nth round. The previews are drawn
+ * off-screen at a low scale, see {@link FrameSequenceExporter} for why a single pixel window is opened.
+ *
+ * The work is spread over all cores in three stages:
+ * <ol>
+ * <li>Decoding: a thread per core opens the replays and applies their actions up to the rounds that are previewed.</li>
+ * <li>Rendering: the rendering thread draws the previewed rounds of a match, and copies out their pixels.</li>
+ * <li>Encoding: a thread per core composes the contact sheets and writes the PNG files.</li>
+ * </ol>
+ * Both hand-offs are bounded, so decoding never runs more than a few matches ahead of the rendering, and the rendering
+ * never runs more than a few matches ahead of the encoding, however many replays there are.
+ *
+ * Usage: ThumbnailGenerator directory [output directory] [contact sheet of every Nth round, 0 for none] [scale]
+ *
+ * @author Anton Valkenberg (anton.valkenberg@gmail.com)
+ *
+ */
+public class ThumbnailGenerator
+		extends ApplicationAdapter {
+
+	/** The amount of matches per core that may wait between two stages. */
+	private static final int QUEUED_MATCHES_PER_CORE = 2;
+
+	/** How long the rendering thread waits for a decoded match before checking whether decoding has finished. */
+	private static final long POLL_MILLIS = 10;
+
+	/** The scale at which previews are drawn by default. */
+	private static final float DEFAULT_SCALE = 0.25f;
+
+	private final List<File> files;
+	private final File output;
+	private final int sheetStep;
+	private final float scale;
+
+	private final int cores = Runtime.getRuntime()
+										.availableProcessors();
+
+	private OffscreenRenderer renderer;
+
+	/** The pixmap the previews are read into, recreated when the size of the previews changes. */
+	private Pixmap pixmap;
+
+	private ExecutorService decoders, encoders;
+
+	/** The index of the next replay to decode, and the amount of decoding threads that have not finished. */
+	private final AtomicInteger nextFile = new AtomicInteger(), runningDecoders = new AtomicInteger();
+
+	/** The matches that have been decoded, waiting to be rendered. */
+	private BlockingQueue<DecodedMatch> decoded;
+
+	/** The amount of rendered matches that may wait to be encoded. */
+	private Semaphore encodingSlots;
+
+	/** The amount of matches that were written, and that could not be decoded or written. */
+	private final AtomicInteger written = new AtomicInteger(), failed = new AtomicInteger();
+
+	private boolean finished = false;
+	private long startTime;
+
+	public ThumbnailGenerator(List<File> files, File output, int sheetStep, float scale) {
+		this.files = files;
+		this.output = output;
+		this.sheetStep = sheetStep;
+		this.scale = scale;
+	}
+
+	public static void main(String[] arg) {
+		if (!ReplayTools.checkArguments(arg, 1, "ThumbnailGenerator directory [output directory] [contact sheet of every Nth round, 0 for none] [scale]"))
+			return;
+
+		List<File> files = ReplayLibrary.findReplays(new File(arg[0]));
+		File output = new File(arg.length > 1 ? arg[1] : "thumbnails");
+		int sheetStep = arg.length > 2 ? Integer.parseInt(arg[2]) : 0;
+		float scale = arg.length > 3 ? Float.parseFloat(arg[3]) : DEFAULT_SCALE;
+
+		new LwjglApplication(new ThumbnailGenerator(files, output, sheetStep, scale),
+								ReplayTools.createHeadlessConfiguration("Generating thumbnails"));
+	}
+
+	@Override
+	public void create() {
+		output.mkdirs();
+		renderer = new OffscreenRenderer(scale);
+
+		decoded = new ArrayBlockingQueue<DecodedMatch>(cores * QUEUED_MATCHES_PER_CORE);
+		encodingSlots = new Semaphore(cores * QUEUED_MATCHES_PER_CORE);
+		decoders = Executors.newFixedThreadPool(cores, new DaemonThreadFactory("thumbnail-decoder"));
+		encoders = Executors.newFixedThreadPool(cores, new DaemonThreadFactory("thumbnail-encoder"));
+
+		startTime = System.currentTimeMillis();
+
+		// Each decoder takes the next replay until none are left, so there is no queue of tasks for every replay
+		runningDecoders.set(cores);
+		for (int i = 0; i < cores; i++) {
+			decoders.execute(new Runnable() {
+
+				@Override
+				public void run() {
+					try {
+						int index;
+						while ((index = nextFile.getAndIncrement()) < files.size()) {
+							DecodedMatch match = decode(files.get(index));
+							if (match != null)
+								decoded.put(match);
+						}
+					} catch (InterruptedException e) {
+						Thread.currentThread()
+								.interrupt();
+					} finally {
+						runningDecoders.decrementAndGet();
+					}
+				}
+
+			});
+		}
+		decoders.shutdown();
+	}
+
+	@Override
+	public void render() {
+		if (finished)
+			return;
+
+		DecodedMatch match;
+		try {
+			match = decoded.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread()
+					.interrupt();
+			return;
+		}
+
+		if (match == null) {
+			// The decoders only stop once their last match is queued, so nothing else will arrive
+			if (runningDecoders.get() == 0 && decoded.isEmpty())
+				finish();
+			return;
+		}
+
+		render(match);
+	}
+
+	/** Decodes the states of a replay that are previewed, returns null if the replay could not be read. */
+	private DecodedMatch decode(File file) {
+		try {
+			ReplayFile replay = ReplayTools.open(file);
+			try {
+				DecodedMatch match = new DecodedMatch(file);
+				int last = replay.size() - 1;
+				if (sheetStep <= 0) {
+					match.finalState = replay.getState(last);
+					match.finalAction = replay.getAction(last);
+					return match;
+				}
+
+				// Go through the match once, keeping a copy of the first state of every Nth round
+				GameRules<HunterKillerState, HunterKillerAction> rules = new HunterKillerRules();
+				HunterKillerState state = replay.getState(0);
+				HunterKillerAction action = null;
+				int sheetRound = -1;
+				for (int i = 0; i <= last; i++) {
+					if (i > 0) {
+						action = replay.getAction(i);
+						rules.handle(state, action);
+					}
+
+					int round = state.getCurrentRound();
+					if (sheetRound < 0 || round - sheetRound >= sheetStep) {
+						sheetRound = round;
+						match.sheetStates.add(state.copy());
+						match.sheetActions.add(action);
+					}
+				}
+				match.finalState = state;
+				match.finalAction = action;
+				return match;
+			} finally {
+				replay.close();
+			}
+		} catch (IOException e) {
+			System.err.println("Could not read " + file + ": " + e.getMessage());
+		} catch (RuntimeException e) {
+			System.err.println("Could not read " + file + ": " + e.getMessage());
+		}
+		failed.incrementAndGet();
+		return null;
+	}
+
+	/** Renders the previews of a match, and hands them to an encoder. Called on the rendering thread. */
+	private void render(final DecodedMatch match) {
+		try {
+			encodingSlots.acquire();
+		} catch (InterruptedException e) {
+			Thread.currentThread()
+					.interrupt();
+			return;
+		}
+
+		final String name = match.file.getName()
+										.replace(ReplayFile.EXTENSION, "");
+
+		renderer.clearMatch();
+		renderer.setScoreboard(true, name);
+		final RenderedFrame thumbnail = render(match.finalState, match.finalAction);
+
+		renderer.setScoreboard(false, null);
+		final List<RenderedFrame> sheet = new ArrayList<RenderedFrame>();
+		for (int i = 0; i < match.sheetStates.size(); i++) {
+			sheet.add(render(match.sheetStates.get(i), match.sheetActions.get(i)));
+		}
+
+		encoders.execute(new Runnable() {
+
+			@Override
+			public void run() {
+				try {
+					ImageIO.write(thumbnail.toImage(), "png", new File(output, name + ".png"));
+					if (!sheet.isEmpty())
+						ImageIO.write(createContactSheet(sheet, match.sheetStates), "png", new File(output, name + "-sheet.png"));
+					written.incrementAndGet();
+				} catch (IOException e) {
+					failed.incrementAndGet();
+					System.err.println("Could not write previews of " + match.file + ": " + e.getMessage());
+				} finally {
+					encodingSlots.release();
+				}
+			}
+
+		});
+	}
+
+	/** Renders a single state, and copies out its pixels. */
+	private RenderedFrame render(HunterKillerState state, HunterKillerAction action) {
+		renderer.setState(state, action);
+		if (pixmap == null || pixmap.getWidth() != renderer.getWidth() || pixmap.getHeight() != renderer.getHeight()) {
+			if (pixmap != null)
+				pixmap.dispose();
+			pixmap = renderer.newPixmap();
+		}
+		renderer.render(pixmap);
+		return RenderedFrame.read(pixmap);
+	}
+
+	/** Lays out frames in a grid that is about as wide as it is high, with the round of each frame in its corner. */
+	private static BufferedImage createContactSheet(List<RenderedFrame> frames, List<HunterKillerState> states) {
+		int columns = (int) Math.ceil(Math.sqrt(frames.size()));
+		int rows = (frames.size() + columns - 1) / columns;
+		int width = frames.get(0)
+							.getWidth(), height = frames.get(0)
+														.getHeight();
+
+		BufferedImage sheet = new BufferedImage(columns * width, rows * height, BufferedImage.TYPE_INT_RGB);
+		Graphics2D graphics = sheet.createGraphics();
+		for (int i = 0; i < frames.size(); i++) {
+			int x = (i % columns) * width, y = (i / columns) * height;
+			graphics.drawImage(frames.get(i)
+										.toImage(), x, y, null);
+			graphics.setColor(Color.WHITE);
+			graphics.drawString("Round " + states.get(i)
+													.getCurrentRound(), x + 4, y + 14);
+		}
+		graphics.dispose();
+		return sheet;
+	}
+
+	/** Waits for the encoders to write the remaining previews, and exits. */
+	private void finish() {
+		finished = true;
+		encoders.shutdown();
+		try {
+			encoders.awaitTermination(1, TimeUnit.HOURS);
+		} catch (InterruptedException e) {
+			Thread.currentThread()
+					.interrupt();
+		}
+
+		System.out.println("Generated previews of " + written.get() + " matches in " + (System.currentTimeMillis() - startTime) + "ms"
+							+ (failed.get() > 0 ? ", " + failed.get() + " matches failed" : ""));
+		Gdx.app.exit();
+	}
+
+	@Override
+	public void dispose() {
+		if (decoders != null)
+			decoders.shutdownNow();
+		if (pixmap != null)
+			pixmap.dispose();
+		if (renderer != null)
+			renderer.dispose();
+	}
+
+	/** The states of a match that are previewed. */
+	private static class DecodedMatch {
+
+		final File file;
+		HunterKillerState finalState;
+		HunterKillerAction finalAction;
+		final List<HunterKillerState> sheetStates = new ArrayList<HunterKillerState>();
+		final List<HunterKillerAction> sheetActions = new ArrayList<HunterKillerAction>();
+
+		DecodedMatch(File file) {
+			this.file = file;
+		}
+
+	}
+
+}
@@ -0,0 +1,330 @@
+package net.codepoke.ai.challenges.hunterkiller.desktop;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.MemoryCacheImageOutputStream;
+
+import net.codepoke.ai.GameRules;
+import net.codepoke.ai.challenge.hunterkiller.HunterKillerAction;
+import net.codepoke.ai.challenge.hunterkiller.HunterKillerRules;
+import net.codepoke.ai.challenge.hunterkiller.HunterKillerState;
+import net.codepoke.ai.challenges.hunterkiller.ui.MatchControls;
+
+import com.badlogic.gdx.ApplicationAdapter;
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.backends.lwjgl.LwjglApplication;
+import com.badlogic.gdx.graphics.Pixmap;
+
+/**
+ * Exports a {@link ReplayFile replay} to a Motion JPEG video in an AVI file, which needs no native codecs to write or to
+ * play. The video plays the match the way the {@link MatchControls} play it back: every
+ * {@link MatchControls#PLAYBACK_INTERVAL} the timeline moves by the playback speed, so each frame of the video is one
+ * step of the playback. A negative speed plays the match backwards from the end, like the controls do.
+ *
+ * The export is a pipeline of four stages with bounded buffers between them:
+ * <ol>
+ * <li>Rendering: the rendering thread applies the actions up to the state of the next frame, and draws it off-screen
+ * with the scoreboard above it.</li>
+ * <li>Readback: the frame is read back from the frame buffer, and its pixels are copied out so the pixmap can be reused.
+ * </li>
+ * <li>Encoding: a thread per core encodes frames as JPEG, several frames at the same time.</li>
+ * <li>Muxing: a single thread writes the encoded frames into the video in order.</li>
+ * </ol>
+ * The frames being encoded are queued in order, and the queue holds at most a few frames per encoder, so the rendering
+ * waits when the encoders or the muxer fall behind. See {@link FrameSequenceExporter} for why a single pixel window is
+ * opened.
+ *
+ * Usage: VideoExporter replay [output file] [playback speed] [scale]
+ *
+ * @author Anton Valkenberg (anton.valkenberg@gmail.com)
+ *
+ */
+public class VideoExporter
+		extends ApplicationAdapter {
+
+	/** The extension of the exported videos. */
+	public static final String EXTENSION = ".avi";
+
+	/** The frame rate of the video, one frame for every step of the playback. */
+	public static final int FRAMES_PER_SECOND = Math.round(1 / MatchControls.PLAYBACK_INTERVAL);
+
+	/** The quality of the JPEG frames, in [0, 1]. */
+	private static final float JPEG_QUALITY = 0.85f;
+
+	/** The amount of frames per encoder thread that may wait to be encoded or written. */
+	private static final int QUEUED_FRAMES_PER_ENCODER = 4;
+
+	/** Marks the end of the frames in the queue of the muxer. */
+	private static final Future<byte[]> END = new FutureTask<byte[]>(new Callable<byte[]>() {
+
+		@Override
+		public byte[] call() {
+			return null;
+		}
+
+	});
+
+	/** Each encoder thread keeps its own JPEG writer. */
+	private static final ThreadLocal<ImageWriter> JPEG = new ThreadLocal<ImageWriter>() {
+
+		@Override
+		protected ImageWriter initialValue() {
+			return ImageIO.getImageWritersByFormatName("jpeg")
+							.next();
+		}
+
+	};
+
+	private final File replayPath, output;
+	private final int playbackSpeed;
+	private final float scale;
+
+	private ReplayFile replay;
+	private OffscreenRenderer renderer;
+	private Pixmap pixmap;
+	private final GameRules<HunterKillerState, HunterKillerAction> rules = new HunterKillerRules();
+
+	/** The state of the frame that is rendered next, its index and the action that led to it. */
+	private HunterKillerState state;
+	private int index;
+	private HunterKillerAction action;
+
+	private ExecutorService encoders;
+
+	/** The frames that are being encoded, in the order they are written. */
+	private BlockingQueue<Future<byte[]>> encoded;
+
+	private Thread muxer;
+	private MjpegAviWriter writer;
+
+	/** The error that stopped the muxer, if any. */
+	private volatile Exception muxError;
+
+	private boolean finished = false;
+	private long startTime;
+
+	public VideoExporter(File replay, File output, int playbackSpeed, float scale) {
+		if (playbackSpeed == 0 || Math.abs(playbackSpeed) > MatchControls.MAX_PLAYBACK_SPEED)
+			throw new RuntimeException("Error: Playback speed should be between 1 and " + MatchControls.MAX_PLAYBACK_SPEED + " in either direction");
+
+		this.replayPath = replay;
+		this.output = output;
+		this.playbackSpeed = playbackSpeed;
+		this.scale = scale;
+	}
+
+	public static void main(String[] arg) {
+		if (!ReplayTools.checkArguments(arg, 1, "VideoExporter replay [output file] [playback speed] [scale]"))
+			return;
+
+		File replay = new File(arg[0]);
+		File output = new File(arg.length > 1 ? arg[1] : replay.getPath()
+																.replace(ReplayFile.EXTENSION, "") + EXTENSION);
+		int playbackSpeed = arg.length > 2 ? Integer.parseInt(arg[2]) : 1;
+		float scale = arg.length > 3 ? Float.parseFloat(arg[3]) : 1;
+
+		new LwjglApplication(new VideoExporter(replay, output, playbackSpeed, scale),
+								ReplayTools.createHeadlessConfiguration("Exporting " + replay.getName()));
+	}
+
+	@Override
+	public void create() {
+		replay = ReplayTools.openRequired(replayPath);
+
+		// Playing backwards starts at the end, like the controls
+		index = playbackSpeed > 0 ? 0 : replay.size() - 1;
+		state = replay.getState(index);
+		action = replay.getAction(index);
+
+		renderer = new OffscreenRenderer(scale);
+		renderer.setScoreboard(true, replayPath.getName()
+												.replace(ReplayFile.EXTENSION, ""));
+		renderer.setState(state, action);
+		pixmap = renderer.newPixmap();
+
+		// The size of the video is fixed, players and map don't change during a match
+		try {
+			writer = new MjpegAviWriter(output, pixmap.getWidth(), pixmap.getHeight(), FRAMES_PER_SECOND);
+		} catch (IOException e) {
+			throw new RuntimeException("Error: Could not create video " + output, e);
+		}
+
+		int threads = Math.max(1, Runtime.getRuntime()
+											.availableProcessors() - 1);
+		encoders = Executors.newFixedThreadPool(threads, new DaemonThreadFactory("jpeg-encoder"));
+		encoded = new ArrayBlockingQueue<Future<byte[]>>(threads * QUEUED_FRAMES_PER_ENCODER);
+
+		muxer = new Thread("video-muxer") {
+
+			@Override
+			public void run() {
+				mux();
+			}
+
+		};
+		muxer.setDaemon(true);
+		muxer.start();
+
+		startTime = System.currentTimeMillis();
+	}
+
+	@Override
+	public void render() {
+		if (finished)
+			return;
+
+		renderer.setState(state, action);
+		renderer.render(pixmap);
+		final RenderedFrame frame = RenderedFrame.read(pixmap);
+
+		try {
+			encoded.put(encoders.submit(new Callable<byte[]>() {
+
+				@Override
+				public byte[] call() throws IOException {
+					return encode(frame);
+				}
+
+			}));
+		} catch (InterruptedException e) {
+			Thread.currentThread()
+					.interrupt();
+			return;
+		}
+
+		// Move on by one step of the playback, the last frame always shows the end of the timeline
+		int last = playbackSpeed > 0 ? replay.size() - 1 : 0;
+		if (index == last || muxError != null) {
+			finish();
+			return;
+		}
+
+		int next = playbackSpeed > 0 ? Math.min(index + playbackSpeed, last) : Math.max(index + playbackSpeed, last);
+		if (playbackSpeed > 0) {
+			while (index < next) {
+				index++;
+				action = replay.getAction(index);
+				rules.handle(state, action);
+			}
+		} else {
+			index = next;
+			state = replay.getState(index);
+			action = replay.getAction(index);
+		}
+	}
+
+	/** Encodes a frame as JPEG. Called on an encoder thread. */
+	private static byte[] encode(RenderedFrame frame) throws IOException {
+		ImageWriter writer = JPEG.get();
+		ImageWriteParam param = writer.getDefaultWriteParam();
+		param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+		param.setCompressionQuality(JPEG_QUALITY);
+
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		MemoryCacheImageOutputStream stream = new MemoryCacheImageOutputStream(bytes);
+		try {
+			writer.setOutput(stream);
+			writer.write(null, new IIOImage(frame.toImage(), null, null), param);
+		} finally {
+			stream.close();
+		}
+		return bytes.toByteArray();
+	}
+
+	/**
+	 * Writes the encoded frames into the video in order, until the end is reached. If the video can't be completed, the
+	 * incomplete file is deleted. Called on the muxer thread.
+	 */
+	private void mux() {
+		boolean completed = false;
+		try {
+			Future<byte[]> frame;
+			while ((frame = encoded.take()) != END) {
+				writer.addFrame(frame.get());
+			}
+			writer.close();
+			completed = true;
+		} catch (InterruptedException e) {
+			Thread.currentThread()
+					.interrupt();
+		} catch (ExecutionException e) {
+			muxError = e;
+		} catch (IOException e) {
+			muxError = e;
+		} finally {
+			if (!completed)
+				writer.discard();
+		}
+
+		// Keep taking frames after an error, so the rendering does not wait on a full queue
+		if (muxError != null) {
+			try {
+				while (encoded.take() != END) {
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread()
+						.interrupt();
+			}
+		}
+	}
+
+	/** Waits for the remaining frames to be encoded and written, and exits. */
+	private void finish() {
+		finished = true;
+		try {
+			encoded.put(END);
+			muxer.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread()
+					.interrupt();
+		}
+		encoders.shutdown();
+		try {
+			encoders.awaitTermination(1, TimeUnit.MINUTES);
+		} catch (InterruptedException e) {
+			Thread.currentThread()
+					.interrupt();
+		}
+
+		if (muxError != null) {
+			System.err.println("Could not export video " + output + ": " + muxError.getMessage());
+			muxError.printStackTrace();
+		} else {
+			long time = System.currentTimeMillis() - startTime;
+			float duration = writer.getFrames() * MatchControls.PLAYBACK_INTERVAL;
+			System.out.println(String.format("Exported %d frames (%.1fs of video) to %s in %.1fs, %.1fx real time", writer.getFrames(), duration,
+												output, time / 1000f, duration / Math.max(time / 1000f, 0.001f)));
+		}
+		Gdx.app.exit();
+	}
+
+	@Override
+	public void dispose() {
+		if (pixmap != null)
+			pixmap.dispose();
+		if (renderer != null)
+			renderer.dispose();
+		try {
+			if (replay != null)
+				replay.close();
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+	}
+
+}
@@ -8,7 +8,10 @@ import com.badlogic.gdx.ApplicationListener;
 import com.badlogic.gdx.backends.gwt.GwtApplication;
 import com.badlogic.gdx.backends.gwt.GwtApplicationConfiguration;
 
+import com.google.gwt.core.client.Duration;
 import com.google.gwt.core.client.GWT;
+import com.google.gwt.core.client.Scheduler;
+import com.google.gwt.core.client.Scheduler.RepeatingCommand;
 import com.google.gwt.dom.client.Document;
 import com.google.gwt.dom.client.Element;
 import com.google.gwt.dom.client.NodeList;
@@ -20,6 +23,7 @@ import com.google.gwt.user.client.ui.VerticalPanel;
 import net.codepoke.ai.challenge.hunterkiller.HunterKillerAction;
 import net.codepoke.ai.challenge.hunterkiller.HunterKillerState;
 import net.codepoke.ai.challenge.hunterkiller.Player;
+import net.codepoke.ai.challenges.hunterkiller.CompactMatchCodec;
 import net.codepoke.ai.challenges.hunterkiller.HunterKillerVisualization;
 import net.codepoke.ai.challenges.hunterkiller.ui.MatchFrame;
 import net.codepoke.ai.challenges.hunterkiller.ui.FrameResizeListener;
@@ -27,6 +31,11 @@ import net.codepoke.ai.network.MatchMessageParser;
 import net.codepoke.ai.network.MatchMessageParser.MessageResponse;
 import net.codepoke.ai.network.MatchMessageParser.MessageResponseListener;
 
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.Json;
+import com.badlogic.gdx.utils.JsonReader;
+import com.badlogic.gdx.utils.JsonValue;
+
 public class HtmlLauncher
 		extends GwtApplication {
 
@@ -38,6 +47,38 @@ public class HtmlLauncher
 	static HtmlLauncher instance;
 	static MatchFrame<HunterKillerState, HunterKillerAction> gameInstance;
 
+	/** Decodes the messages of the stream if the server sends them in the compact encoding. */
+	static CompactMatchCodec codec = new CompactMatchCodec();
+
+	/** Decodes the batches of actions the server sends as JSON, if it does not support the compact encoding. */
+	static Json json = new Json();
+	static JsonReader jsonReader = new JsonReader();
+
+	/** Decides how many messages of the stream we acknowledge at a time. */
+	static StreamWindow window = new StreamWindow();
+
+	/** The time we spend on handling messages before giving the browser back control, in milliseconds. */
+	static final double SLICE_MILLIS = 8;
+
+	/** The amount of actions applied at a time, between which we check whether the slice is used up. */
+	static final int ACTIONS_PER_STEP = 16;
+
+	/**
+	 * The messages that have been received from the stream worker, but have not been handled yet. Either compact
+	 * messages, or JSON text that the worker could not transcode.
+	 */
+	static Array<Object> pendingMessages = new Array<Object>();
+
+	/** The amount of states the pending messages will add, which is counted when they are queued. */
+	static int pendingMessageStates = 0;
+
+	/** The batch of actions that is being applied, and the index of the next action to apply. */
+	static Array<HunterKillerAction> pendingActions;
+	static int pendingActionIndex;
+
+	/** Whether the pending messages are being handled in slices. */
+	static boolean handlingMessages = false;
+
 	public FrameResizeListener listener;
 
 	int previousGraphRound = 0;
@@ -92,21 +133,7 @@ public class HtmlLauncher
 							if (response == MessageResponse.MatchStart) {
 								instance.scaleCanvas();
 							} else if (response == MessageResponse.MatchRound) {
-								HunterKillerState lastState = gameInstance.getLastState();
-
-								if (instance.previousGraphRound + 5 <= lastState.getCurrentRound()) {
-									instance.previousGraphRound = lastState.getCurrentRound();
-
-									Player[] players = lastState.getPlayers();
-									int[] scores = new int[players.length];
-									for (int i = 0; i < scores.length; i++) {
-										scores[i] = players[i].getScore();
-									}
-									instance.updateGraphData(lastState.getCurrentRound(), scores);
-
-									if (instance.previousGraphRound % 100 == 0)
-										instance.updateGraph();
-								}
+								instance.updateScores();
 							}
 						}
 
@@ -152,7 +179,31 @@ public class HtmlLauncher
 
 		debug("main", "ID: " + matchNameStr.get(0) + " NAME: " + gameNameStr.get(0) + " URL: " + hostNameStr.get(0));
 
-		attachSocket(hostNameStr.get(0) + "competition/stream_match?game_name=" + gameNameStr.get(0) + "&match_name=" + matchNameStr.get(0));
+		// Ask for the compact encoding, servers that don't support it keep sending JSON
+		attachStream(hostNameStr.get(0) + "competition/stream_match?game_name=" + gameNameStr.get(0) + "&match_name=" + matchNameStr.get(0)
+						+ "&" + CompactMatchCodec.ENCODING_PARAMETER + "=" + CompactMatchCodec.ENCODING_COMPACT + "&window="
+						+ StreamWindow.MAX_WINDOW);
+	}
+
+	/** Adds the scores of the last state to the graph, every 5 rounds. */
+	void updateScores() {
+		HunterKillerState lastState = gameInstance.getLastState();
+		if (lastState == null)
+			return;
+
+		if (previousGraphRound + 5 <= lastState.getCurrentRound()) {
+			previousGraphRound = lastState.getCurrentRound();
+
+			Player[] players = lastState.getPlayers();
+			int[] scores = new int[players.length];
+			for (int i = 0; i < scores.length; i++) {
+				scores[i] = players[i].getScore();
+			}
+			updateGraphData(lastState.getCurrentRound(), scores);
+
+			if (previousGraphRound % 100 == 0)
+				updateGraph();
+		}
 	}
 
 	void scaleCanvas() {
@@ -182,12 +233,191 @@ public class HtmlLauncher
 	}
 
 	static void handleMessage(String message) {
-		if (gameInstance != null) {
-			MatchMessageParser<HunterKillerState, HunterKillerAction> parser = gameInstance.getParser();
-			parser.parseMessage(gameInstance.getLastState(), message);
+		if (gameInstance == null)
+			return;
+
+		Array<HunterKillerAction> actions = decodeActions(message);
+		if (actions != null) {
+			gameInstance.addActions(actions);
+			instance.updateScores();
+		} else {
+			handleParsedMessage(message);
+		}
+	}
+
+	/**
+	 * Hands a JSON message that is not a batch of actions, such as the players or the initial state, to the parser. Any
+	 * actions before it must have been added, since the parser continues from the last state.
+	 */
+	static void handleParsedMessage(String message) {
+		MatchMessageParser<HunterKillerState, HunterKillerAction> parser = gameInstance.getParser();
+		parser.parseMessage(gameInstance.getLastState(), message);
+	}
+
+	/**
+	 * Decodes a JSON message if it is a batch of actions, a top-level array of objects containing orders.
+	 *
+	 * @return The actions, or null if the message is something else.
+	 */
+	@SuppressWarnings("unchecked")
+	static Array<HunterKillerAction> decodeActions(String message) {
+		JsonValue root = jsonReader.parse(message);
+		if (!root.isArray() || root.child == null || !root.child.isObject() || !root.child.has("orders"))
+			return null;
+		return json.readValue(Array.class, HunterKillerAction.class, root);
+	}
+
+	static void handleCompactMessage(byte[] message) {
+		if (gameInstance == null)
+			return;
+
+		if (CompactMatchCodec.getKind(message) == CompactMatchCodec.KIND_ACTIONS) {
+			gameInstance.addActions(codec.decodeActions(message));
+			instance.updateScores();
+		} else {
+			handleObject(codec.decodeObject(Object.class, message));
+		}
+	}
+
+	/**
+	 * Handles a decoded message that is not a batch of actions. A message containing states, such as the initial state,
+	 * starts the match from those. Other messages, such as the players, are not needed since every state holds its
+	 * players.
+	 */
+	static void handleObject(Object message) {
+		if (!(message instanceof Array))
+			return;
+
+		Array<?> items = (Array<?>) message;
+		for (int i = 0; i < items.size; i++) {
+			if (items.get(i) instanceof HunterKillerState) {
+				gameInstance.addState((HunterKillerState) items.get(i), null);
+				instance.scaleCanvas();
+			}
+		}
+	}
+
+	/**
+	 * Queues a compact message received from the stream worker. The messages are handled in slices of
+	 * {@link #SLICE_MILLIS}, so a large batch of actions does not freeze the page.
+	 */
+	static void queueCompactMessage(byte[] message) {
+		queueMessage(message);
+	}
+
+	/**
+	 * Queues a JSON message the stream worker could not transcode, which is handled in order with the compact messages.
+	 */
+	static void queueTextMessage(String message) {
+		queueMessage(message);
+	}
+
+	static void queueMessage(Object message) {
+		pendingMessages.add(message);
+		pendingMessageStates += countStates(message);
+		if (handlingMessages)
+			return;
+
+		handlingMessages = true;
+		Scheduler.get()
+					.scheduleIncremental(new RepeatingCommand() {
+
+						@Override
+						public boolean execute() {
+							handlingMessages = handlePendingMessages();
+							return handlingMessages;
+						}
+
+					});
+	}
+
+	/**
+	 * Handles pending messages until the slice is used up.
+	 *
+	 * @return Whether there is anything left to handle.
+	 */
+	static boolean handlePendingMessages() {
+		if (gameInstance == null)
+			return false;
+
+		double deadline = Duration.currentTimeMillis() + SLICE_MILLIS;
+		try {
+			while (Duration.currentTimeMillis() < deadline) {
+				// Continue applying the current batch of actions
+				if (pendingActions != null && pendingActionIndex < pendingActions.size) {
+					int end = Math.min(pendingActionIndex + ACTIONS_PER_STEP, pendingActions.size);
+					gameInstance.addActions(pendingActions, pendingActionIndex, end);
+					pendingActionIndex = end;
+					continue;
+				}
+				pendingActions = null;
+
+				if (pendingMessages.size == 0)
+					return false;
+
+				Object pending = pendingMessages.removeIndex(0);
+				pendingMessageStates -= countStates(pending);
+				if (pending instanceof String) {
+					// Batches of actions are applied in steps like the compact ones
+					Array<HunterKillerAction> actions = decodeActions((String) pending);
+					if (actions != null) {
+						pendingActions = actions;
+						pendingActionIndex = 0;
+					} else {
+						handleParsedMessage((String) pending);
+					}
+					continue;
+				}
+
+				byte[] message = (byte[]) pending;
+				if (CompactMatchCodec.getKind(message) == CompactMatchCodec.KIND_ACTIONS) {
+					pendingActions = codec.decodeActions(message);
+					pendingActionIndex = 0;
+				} else {
+					handleObject(codec.decodeObject(Object.class, message));
+				}
+			}
+			return true;
+		} finally {
+			instance.updateScores();
 		}
 	}
 
+	/**
+	 * Returns the amount of states a pending message adds. A compact batch of actions holds its count in its header,
+	 * any other message adds at most one state.
+	 */
+	static int countStates(Object message) {
+		if (message instanceof byte[] && CompactMatchCodec.getKind((byte[]) message) == CompactMatchCodec.KIND_ACTIONS)
+			return CompactMatchCodec.getActionCount((byte[]) message);
+		return 1;
+	}
+
+	static int openWindow() {
+		return window.open();
+	}
+
+	static int acknowledge() {
+		// Messages that have not been handled yet count towards the backlog
+		int backlog = gameInstance != null ? gameInstance.getBacklog() : 0;
+		if (pendingActions != null)
+			backlog += pendingActions.size - pendingActionIndex;
+		backlog += pendingMessageStates;
+		return window.handled(backlog);
+	}
+
+	static byte[] newByteArray(int length) {
+		return new byte[length];
+	}
+
+	/**
+	 * Returns the path of the stream worker. The files of the web app are deployed next to the folder of the assets, so
+	 * the worker is found relative to it, which also works when the viewer is embedded in a page elsewhere.
+	 */
+	String getWorkerPath() {
+		return getApplicationPath() + "../stream-worker.js";
+	}
+
 	native String getApplicationPath() /*-{
 										if($wnd.assetPath === undefined)
 											return "/assets/";
@@ -221,16 +451,83 @@ public class HtmlLauncher
 								$wnd.graph.setData($wnd.matchData);
 								}-*/;
 
+	/**
+	 * Attaches to the match stream through a worker, which receives the messages and transcodes the batches of actions
+	 * off the main thread. Falls back to {@link #attachSocket(String)} if the browser has no workers, or if the worker
+	 * fails before the stream is open.
+	 */
+	native void attachStream(String url) /*-{
+											var launcher = this;
+											if (typeof Worker === "undefined" || typeof TextEncoder === "undefined") {
+												launcher.@net.codepoke.ai.challenges.hunterkiller.client.HtmlLauncher::attachSocket(Ljava/lang/String;)(url);
+												return;
+											}
+
+											var worker = new Worker(launcher.@net.codepoke.ai.challenges.hunterkiller.client.HtmlLauncher::getWorkerPath()());
+											var opened = false;
+
+											// A worker that could not be loaded falls back to the socket, once the stream is open that would replay it
+											worker.onerror = function(event) {
+												event.preventDefault();
+												worker.terminate();
+												if (!opened) {
+													launcher.@net.codepoke.ai.challenges.hunterkiller.client.HtmlLauncher::attachSocket(Ljava/lang/String;)(url);
+												} else {
+													@net.codepoke.ai.challenges.hunterkiller.client.HtmlLauncher::setError(Ljava/lang/String;)("Error: Lost the match stream (" + event.message + ")");
+												}
+											}
+
+											worker.onmessage = function(event) {
+												var data = event.data;
+												if (data.open) {
+													opened = true;
+													worker.postMessage({ acknowledge : @net.codepoke.ai.challenges.hunterkiller.client.HtmlLauncher::openWindow()() });
+													return;
+												}
+
+												if (data.text !== undefined) {
+													@net.codepoke.ai.challenges.hunterkiller.client.HtmlLauncher::queueTextMessage(Ljava/lang/String;)(data.text);
+												} else {
+													var view = new Uint8Array(data.message);
+													var bytes = @net.codepoke.ai.challenges.hunterkiller.client.HtmlLauncher::newByteArray(I)(view.length);
+													for (var i = 0; i < view.length; i++)
+														bytes[i] = (view[i] << 24) >> 24;
+													@net.codepoke.ai.challenges.hunterkiller.client.HtmlLauncher::queueCompactMessage([B)(bytes);
+												}
+
+												var count = @net.codepoke.ai.challenges.hunterkiller.client.HtmlLauncher::acknowledge()();
+												if (count > 0)
+													worker.postMessage({ acknowledge : count });
+											}
+
+											worker.postMessage({ url : url });
+											}-*/;
+
 	native void attachSocket(String url) /*-{
 											var socket = new WebSocket(url);
+											socket.binaryType = "arraybuffer";
+
+											// Every "." lets the server send one more message, we send them in batches
+											var sendAcknowledgements = function(count) {
+												for (var i = 0; i < count; i++)
+													socket.send(".");
+											}
 
 											socket.onopen = function() {
-												socket.send(".");
+												sendAcknowledgements(@net.codepoke.ai.challenges.hunterkiller.client.HtmlLauncher::openWindow()());
 											}
 
 											socket.onmessage = function(msg) {
-												@net.codepoke.ai.challenges.hunterkiller.client.HtmlLauncher::handleMessage(*)(msg.data);
-												socket.send(".");
+												if (typeof msg.data === "string") {
+													@net.codepoke.ai.challenges.hunterkiller.client.HtmlLauncher::handleMessage(*)(msg.data);
+												} else {
+													var view = new Uint8Array(msg.data);
+													var bytes = @net.codepoke.ai.challenges.hunterkiller.client.HtmlLauncher::newByteArray(I)(view.length);
+													for (var i = 0; i < view.length; i++)
+														bytes[i] = (view[i] << 24) >> 24;
+													@net.codepoke.ai.challenges.hunterkiller.client.HtmlLauncher::handleCompactMessage([B)(bytes);
+												}
+												sendAcknowledgements(@net.codepoke.ai.challenges.hunterkiller.client.HtmlLauncher::acknowledge()());
 											}
 
 											socket.onerror = function(error) {
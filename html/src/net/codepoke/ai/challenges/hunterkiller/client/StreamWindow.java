@@ -0,0 +1,78 @@
+package net.codepoke.ai.challenges.hunterkiller.client;
+
+import net.codepoke.ai.challenges.hunterkiller.ui.MatchFrame;
+
+/**
+ * Flow control for the match stream. The server sends one message for every acknowledgement ("."), so instead of
+ * acknowledging each message after it arrives (one message per round-trip), we hand out a window of acknowledgements
+ * up front and top it up in batches once half of it has been used. This keeps the link busy on high-latency
+ * connections.
+ *
+ * If the rendering thread falls behind on taking in the states, the window shrinks so the stream slows down, and it
+ * grows back once the rendering has caught up. The messages that were acknowledged before a shrink still arrive
+ * afterwards, so the window halves at most once per window of acknowledgements, instead of once for each of those
+ * messages.
+ */
+public class StreamWindow {
+
+	/** The range of the window, in messages. */
+	public static final int MIN_WINDOW = 1, MAX_WINDOW = 64;
+
+	/** The backlog of states at which the window starts shrinking. */
+	public static final int MAX_BACKLOG = MatchFrame.MAX_STATES_PER_FRAME * 4;
+
+	/** The current size of the window. */
+	private int window = MAX_WINDOW;
+
+	/** The amount of acknowledgements sent for which no message has arrived yet. */
+	private int outstanding = 0;
+
+	/** The amount of messages to handle before the window may shrink again. */
+	private int shrinkDelay = 0;
+
+	/**
+	 * Called when the stream opens.
+	 *
+	 * @return The amount of acknowledgements to send.
+	 */
+	public int open() {
+		outstanding = window;
+		shrinkDelay = 0;
+		return window;
+	}
+
+	/**
+	 * Called after a message has been handled.
+	 *
+	 * @param backlog
+	 *            The amount of states the rendering thread still has to take in.
+	 * @return The amount of acknowledgements to send, 0 if the window is still more than half full.
+	 */
+	public int handled(int backlog) {
+		outstanding = Math.max(0, outstanding - 1);
+		shrinkDelay = Math.max(0, shrinkDelay - 1);
+
+		if (backlog > MAX_BACKLOG) {
+			// Wait for the messages acknowledged under the previous window before shrinking again
+			if (shrinkDelay == 0) {
+				shrinkDelay = window;
+				window = Math.max(MIN_WINDOW, window / 2);
+			}
+		} else if (window < MAX_WINDOW) {
+			window++;
+		}
+
+		if (outstanding > window / 2)
+			return 0;
+
+		int acknowledgements = window - outstanding;
+		outstanding = window;
+		return acknowledgements;
+	}
+
+	/** Returns the current size of the window. */
+	public int getWindow() {
+		return window;
+	}
+
+}
@@ -0,0 +1,366 @@
+// Receives the match stream off the main thread of the viewer.
+//
+// The worker owns the websocket. Messages that arrive as JSON text are transcoded into the compact encoding of
+// CompactMatchCodec (see the core project), so the main thread never tokenizes JSON, and reads the messages straight
+// into their objects instead. Objects are written as shapes: the keys of an object (with its "class" key written as the
+// class of the shape) are written the first time they occur in a message, after which objects with the same keys only
+// write their values. Every message is posted to the main thread as an ArrayBuffer, which is transferred instead of
+// copied.
+//
+// The JSON is written by libGDX's Json, which by default leaves out the quotes around most names and strings, so it is
+// read with a parser that accepts the same input as libGDX's JsonReader instead of JSON.parse. Text that can't be read
+// is passed on unchanged, so the main thread reports the error and the stream keeps going.
+//
+// From the main thread:  { url: String } opens the stream, { acknowledge: Number } sends that many acknowledgements.
+// To the main thread:    { open: true } once the stream is open, then for every message of the stream, in order,
+//                        { message: ArrayBuffer } or { text: String } for text that could not be transcoded.
+
+var MAGIC = [0x48, 0x4B], VERSION = 2, KIND_MESSAGE = 0, KIND_ACTIONS = 1;
+var TAG_NULL = 0, TAG_FALSE = 1, TAG_TRUE = 2, TAG_LONG = 3, TAG_FLOAT = 4, TAG_DOUBLE = 5, TAG_STRING = 6,
+	TAG_STRING_REF = 7, TAG_ARRAY = 8, TAG_OBJECT = 9, TAG_SHAPE = 10;
+
+var socket = null;
+var encoder = new TextEncoder();
+
+self.onmessage = function(event) {
+	var data = event.data;
+	if (data.url !== undefined) {
+		open(data.url);
+	} else if (data.acknowledge !== undefined && socket !== null) {
+		// Every "." lets the server send one more message
+		for (var i = 0; i < data.acknowledge; i++)
+			socket.send(".");
+	}
+};
+
+function open(url) {
+	socket = new WebSocket(url);
+	socket.binaryType = "arraybuffer";
+
+	socket.onopen = function() {
+		self.postMessage({ open : true });
+	};
+
+	socket.onmessage = function(msg) {
+		var buffer = msg.data;
+		if (typeof buffer === "string") {
+			try {
+				buffer = transcode(buffer);
+			} catch (error) {
+				console.error("Could not transcode message: " + error.message);
+				self.postMessage({ text : msg.data });
+				return;
+			}
+		}
+		self.postMessage({ message : buffer }, [ buffer ]);
+	};
+
+	socket.onerror = function(error) {
+		console.error('Error detected: ' + error);
+	};
+
+	socket.onclose = function() {
+		console.error("!!----closed connection: " + url);
+	};
+}
+
+// Transcodes a JSON message into the compact encoding, a top-level array of objects containing orders is a batch of
+// actions.
+function transcode(text) {
+	var root = parse(text);
+	var writer = new Writer();
+
+	writer.byte(MAGIC[0]);
+	writer.byte(MAGIC[1]);
+	writer.byte(VERSION);
+	writer.byte(isActions(root) ? KIND_ACTIONS : KIND_MESSAGE);
+	writer.value(root);
+
+	return writer.finish();
+}
+
+function isActions(root) {
+	return Array.isArray(root) && root.length > 0 && root[0] !== null && typeof root[0] === "object"
+			&& root[0].orders !== undefined;
+}
+
+// Parses JSON in any of the output types of libGDX's Json (json, javascript or minimal). Like its JsonReader, names and
+// values may be unquoted, commas between elements are optional and comments are skipped. Unquoted values that look like
+// numbers, booleans or null are read as such, any other unquoted value is a string.
+function parse(text) {
+	var reader = new Reader(text);
+	var value = reader.value();
+	reader.skipWhitespace();
+	if (reader.index < text.length)
+		reader.fail("Unexpected '" + text.charAt(reader.index) + "'");
+	return value;
+}
+
+var NUMBER = /^-?([0-9]+\.?[0-9]*|\.[0-9]+)([eE][+-]?[0-9]+)?$/;
+
+function Reader(text) {
+	this.text = text;
+	this.index = 0;
+}
+
+Reader.prototype.fail = function(reason) {
+	throw new Error(reason + " at " + this.index);
+};
+
+Reader.prototype.skipWhitespace = function() {
+	var text = this.text;
+	while (this.index < text.length) {
+		var c = text.charAt(this.index);
+		if (c === " " || c === "\t" || c === "\r" || c === "\n") {
+			this.index++;
+		} else if (c === "/" && text.charAt(this.index + 1) === "/") {
+			var lineEnd = text.indexOf("\n", this.index);
+			this.index = lineEnd < 0 ? text.length : lineEnd + 1;
+		} else if (c === "/" && text.charAt(this.index + 1) === "*") {
+			var commentEnd = text.indexOf("*/", this.index + 2);
+			this.index = commentEnd < 0 ? text.length : commentEnd + 2;
+		} else {
+			return;
+		}
+	}
+};
+
+// Skips whitespace and any commas, returns the character after them
+Reader.prototype.skipSeparators = function() {
+	this.skipWhitespace();
+	while (this.text.charAt(this.index) === ",") {
+		this.index++;
+		this.skipWhitespace();
+	}
+	if (this.index >= this.text.length)
+		this.fail("Unexpected end");
+	return this.text.charAt(this.index);
+};
+
+Reader.prototype.value = function() {
+	this.skipWhitespace();
+	var c = this.text.charAt(this.index);
+	if (c === "{")
+		return this.object();
+	if (c === "[")
+		return this.array();
+	if (c === "\"")
+		return this.quoted();
+	return this.unquoted(false);
+};
+
+Reader.prototype.object = function() {
+	var object = {};
+	this.index++;
+	for (;;) {
+		var c = this.skipSeparators();
+		if (c === "}") {
+			this.index++;
+			return object;
+		}
+
+		var name = c === "\"" ? this.quoted() : this.unquoted(true);
+		this.skipWhitespace();
+		if (this.text.charAt(this.index) !== ":")
+			this.fail("Expected ':'");
+		this.index++;
+		object[name] = this.value();
+	}
+};
+
+Reader.prototype.array = function() {
+	var array = [];
+	this.index++;
+	for (;;) {
+		if (this.skipSeparators() === "]") {
+			this.index++;
+			return array;
+		}
+		array.push(this.value());
+	}
+};
+
+Reader.prototype.quoted = function() {
+	var text = this.text, result = "";
+	this.index++;
+	for (;;) {
+		var end = this.index;
+		while (end < text.length && text.charAt(end) !== "\"" && text.charAt(end) !== "\\")
+			end++;
+		if (end >= text.length)
+			this.fail("Unterminated string");
+
+		result += text.substring(this.index, end);
+		this.index = end + 1;
+		if (text.charAt(end) === "\"")
+			return result;
+
+		var escape = text.charAt(this.index++);
+		if (escape === "b") {
+			result += "\b";
+		} else if (escape === "f") {
+			result += "\f";
+		} else if (escape === "n") {
+			result += "\n";
+		} else if (escape === "r") {
+			result += "\r";
+		} else if (escape === "t") {
+			result += "\t";
+		} else if (escape === "u") {
+			result += String.fromCharCode(parseInt(text.substr(this.index, 4), 16));
+			this.index += 4;
+		} else {
+			result += escape;
+		}
+	}
+};
+
+// An unquoted name ends at the colon, an unquoted value at the end of its element. Both end at the end of the line or
+// a comment, libGDX quotes any string containing those.
+Reader.prototype.unquoted = function(isName) {
+	var text = this.text, start = this.index;
+	while (this.index < text.length) {
+		var c = text.charAt(this.index);
+		if (isName ? c === ":" : c === "," || c === "}" || c === "]")
+			break;
+		if (c === "\r" || c === "\n" || (c === "/" && (text.charAt(this.index + 1) === "/" || text.charAt(this.index + 1) === "*")))
+			break;
+		this.index++;
+	}
+
+	var token = text.substring(start, this.index).trim();
+	if (token.length === 0)
+		this.fail("Expected a value");
+	if (isName)
+		return token;
+
+	if (token === "true")
+		return true;
+	if (token === "false")
+		return false;
+	if (token === "null")
+		return null;
+	if (NUMBER.test(token))
+		return Number(token);
+	return token;
+};
+
+function Writer() {
+	this.bytes = new Uint8Array(1024);
+	this.view = new DataView(this.bytes.buffer);
+	this.size = 0;
+	this.strings = new Map();
+	this.shapes = new Map();
+}
+
+Writer.prototype.ensure = function(extra) {
+	if (this.size + extra <= this.bytes.length)
+		return;
+	var larger = new Uint8Array(Math.max(this.bytes.length * 2, this.size + extra));
+	larger.set(this.bytes.subarray(0, this.size));
+	this.bytes = larger;
+	this.view = new DataView(larger.buffer);
+};
+
+Writer.prototype.byte = function(b) {
+	this.ensure(1);
+	this.bytes[this.size++] = b & 0xFF;
+};
+
+// Zig-zag encoded variable-length integer, 7 bits per byte. Uses arithmetic instead of bit operations, since those
+// are limited to 32 bits.
+Writer.prototype.varLong = function(number) {
+	var zigZag = number >= 0 ? number * 2 : -number * 2 - 1;
+	while (zigZag >= 128) {
+		this.byte((zigZag % 128) | 0x80);
+		zigZag = Math.floor(zigZag / 128);
+	}
+	this.byte(zigZag);
+};
+
+Writer.prototype.string = function(string) {
+	var index = this.strings.get(string);
+	if (index !== undefined) {
+		this.byte(TAG_STRING_REF);
+		this.varLong(index);
+		return;
+	}
+
+	this.strings.set(string, this.strings.size);
+	var utf8 = encoder.encode(string);
+	this.byte(TAG_STRING);
+	this.varLong(utf8.length);
+	this.ensure(utf8.length);
+	this.bytes.set(utf8, this.size);
+	this.size += utf8.length;
+};
+
+Writer.prototype.value = function(value) {
+	if (value === null) {
+		this.byte(TAG_NULL);
+	} else if (typeof value === "boolean") {
+		this.byte(value ? TAG_TRUE : TAG_FALSE);
+	} else if (typeof value === "number") {
+		if (Number.isSafeInteger(value)) {
+			this.byte(TAG_LONG);
+			this.varLong(value);
+		} else if (Math.fround(value) === value) {
+			this.byte(TAG_FLOAT);
+			this.ensure(4);
+			this.view.setFloat32(this.size, value);
+			this.size += 4;
+		} else {
+			this.byte(TAG_DOUBLE);
+			this.ensure(8);
+			this.view.setFloat64(this.size, value);
+			this.size += 8;
+		}
+	} else if (typeof value === "string") {
+		this.string(value);
+	} else if (Array.isArray(value)) {
+		this.byte(TAG_ARRAY);
+		this.varLong(value.length);
+		for (var i = 0; i < value.length; i++)
+			this.value(value[i]);
+	} else {
+		var keys = Object.keys(value), className = null, names = [];
+		for (var i = 0; i < keys.length; i++) {
+			if (keys[i] === "class" && typeof value[keys[i]] === "string") {
+				className = value[keys[i]];
+			} else {
+				names.push(keys[i]);
+			}
+		}
+
+		this.shape(className, names);
+		for (var i = 0; i < names.length; i++)
+			this.value(value[names[i]]);
+	}
+};
+
+// Writes the index of a shape, or its definition if it has not been written in this message yet
+Writer.prototype.shape = function(className, names) {
+	var key = (className === null ? "" : className) + "\n" + names.join("\n");
+	var index = this.shapes.get(key);
+	if (index !== undefined) {
+		this.byte(TAG_OBJECT);
+		this.varLong(index);
+		return;
+	}
+
+	this.shapes.set(key, this.shapes.size);
+	this.byte(TAG_SHAPE);
+	this.varLong(names.length);
+	if (className === null) {
+		this.byte(TAG_NULL);
+	} else {
+		this.string(className);
+	}
+	for (var i = 0; i < names.length; i++)
+		this.string(names[i]);
+};
+
+// Returns the written bytes in a buffer of their own, so it can be transferred
+Writer.prototype.finish = function() {
+	return this.bytes.buffer.slice(0, this.size);
+};